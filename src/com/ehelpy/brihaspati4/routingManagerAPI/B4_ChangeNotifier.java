@@ -0,0 +1,113 @@
+package com.ehelpy.brihaspati4.routingManagerAPI;
+
+import org.apache.log4j.Logger;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * This class is used to deliver the changes made to the tables of a layer to the registered RoutingTableListeners.
+ * Every publish of a layer is one operation. The events of an operation are found by comparing the snapshot before
+ * and after the publish, cell by cell for the routing table and by nodeID for the neighbour table.
+ * Comparison and delivery run on a single notification thread, so the writer is not delayed and the batches are
+ * delivered in the order of the publishes. Nothing is done while no listener is registered.
+ */
+class B4_ChangeNotifier {
+    private static final Logger log = Logger.getLogger(B4_ChangeNotifier.class);
+    private final CopyOnWriteArrayList<RoutingTableListener> listeners = new CopyOnWriteArrayList<>();
+    private final ExecutorService executor;
+
+    B4_ChangeNotifier() {
+        this.executor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "B4_ChangeNotifier");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    void addListener(RoutingTableListener listener) {
+        listeners.addIfAbsent(listener);
+    }
+
+    void removeListener(RoutingTableListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * @param layerID  - layer which is published.
+     * @param previous - snapshot replaced by the publish.
+     * @param current  - snapshot published.
+     */
+    void published(int layerID, B4_RoutingTable.Snapshot previous, B4_RoutingTable.Snapshot current) {
+        if (listeners.isEmpty()) return;
+        executor.execute(() -> {
+            List<RoutingTableEvent> events = changes(layerID, previous, current);
+            if (events.isEmpty()) return;
+            for (RoutingTableListener listener : listeners) {
+                try {
+                    listener.onRoutingTableChanged(layerID, events);
+                } catch (RuntimeException e) {
+                    log.error("Exception Occurred", e);
+                }
+            }
+        });
+    }
+
+    /**
+     * @return - events of the routing table followed by the events of the neighbour table.
+     */
+    static List<RoutingTableEvent> changes(int layerID, B4_RoutingTable.Snapshot previous, B4_RoutingTable.Snapshot current) {
+        List<RoutingTableEvent> events = new ArrayList<>();
+        B4_Node[][] oldRT = previous.getRoutingTable();
+        B4_Node[][] newRT = current.getRoutingTable();
+        if (oldRT != newRT) {
+            for (int i = 0; i < newRT.length; i++) {
+                for (int j = 0; j < newRT[i].length; j++) {
+                    B4_Node oldNode = i < oldRT.length ? oldRT[i][j] : null;
+                    B4_Node newNode = newRT[i][j];
+                    String oldID = nodeID(oldNode);
+                    String newID = nodeID(newNode);
+                    if (oldID.equalsIgnoreCase(newID)) continue;
+                    if (oldID.isEmpty()) events.add(new RoutingTableEvent(RoutingTableEvent.Type.CELL_INSERTED, layerID, i, j, null, newNode));
+                    else if (newID.isEmpty()) events.add(new RoutingTableEvent(RoutingTableEvent.Type.CELL_PURGED, layerID, i, j, oldNode, null));
+                    else events.add(new RoutingTableEvent(RoutingTableEvent.Type.CELL_REPLACED, layerID, i, j, oldNode, newNode));
+                }
+            }
+        }
+        B4_Node[] oldNT = previous.getNeighbourTable();
+        B4_Node[] newNT = current.getNeighbourTable();
+        if (oldNT != newNT) {
+            HashMap<String, Integer> oldPositions = new HashMap<>();
+            for (int i = 0; i < oldNT.length; i++) {
+                String oldID = nodeID(oldNT[i]);
+                if (!oldID.isEmpty()) oldPositions.putIfAbsent(oldID.toUpperCase(), i);
+            }
+            for (int i = 0; i < newNT.length; i++) {
+                String newID = nodeID(newNT[i]);
+                if (newID.isEmpty()) continue;
+                Integer oldPosition = oldPositions.remove(newID.toUpperCase());
+                if (oldPosition == null) {
+                    events.add(new RoutingTableEvent(RoutingTableEvent.Type.NEIGHBOUR_ADDED, layerID, i, -1, null, newNT[i]));
+                } else if (oldPosition != i || oldNT[oldPosition].getRtt() != newNT[i].getRtt()) {
+                    events.add(new RoutingTableEvent(RoutingTableEvent.Type.NEIGHBOUR_RERANKED, layerID, i, -1, oldNT[oldPosition], newNT[i]));
+                }
+            }
+            List<Integer> removed = new ArrayList<>(oldPositions.values());
+            Collections.sort(removed);
+            for (int i : removed) {
+                events.add(new RoutingTableEvent(RoutingTableEvent.Type.NEIGHBOUR_REMOVED, layerID, i, -1, oldNT[i], null));
+            }
+        }
+        return Collections.unmodifiableList(events);
+    }
+
+    private static String nodeID(B4_Node node) {
+        if (node == null || node.getB4node().getNodeID() == null) return "";
+        return node.getB4node().getNodeID();
+    }
+}
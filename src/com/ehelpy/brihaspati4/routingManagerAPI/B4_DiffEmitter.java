@@ -0,0 +1,156 @@
+package com.ehelpy.brihaspati4.routingManagerAPI;
+
+import org.apache.log4j.Logger;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This class is used to collect the nodes added to the routing table of a layer and send them as one differential
+ * routing table per window instead of one per merge.
+ * A window is closed when it holds DiffWindow_size nodes or DiffWindow_ms milliseconds after its first node,
+ * whichever comes first. A node added more than once within a window is sent once, with its latest details.
+ * Every differential routing table of a layer gets a sequence number higher than the previous one, so a receiver can
+ * discard a table older than the last one it has merged from the same node.
+ * <br>Closed windows are written by the thread of the emitter, outside its lock, so neither the merge which fills a
+ * window nor the other layers wait for the write.
+ * <br>A window closed on size cancels its timer, so the timer never closes the next window of the layer early.
+ */
+class B4_DiffEmitter {
+    private static final Logger log = Logger.getLogger(B4_DiffEmitter.class);
+    private final long windowMillis;
+    private final int windowSize;
+    private final Emitter emitter;
+    private final HashMap<Integer, Window> pending = new HashMap<>();
+    private final HashMap<Integer, Long> sequences = new HashMap<>();
+    private final ScheduledExecutorService scheduler;
+
+    /**
+     * This interface writes a differential routing table of a layer.
+     */
+    interface Emitter {
+        /**
+         * @param layerID  - layer of the differential routing table.
+         * @param nodes    - nodes added to the routing table within the window, in the order in which they were added.
+         * @param sequence - sequence number of the differential routing table.
+         */
+        void emit(int layerID, List<B4_Node> nodes, long sequence);
+    }
+
+    /**
+     * This class holds the nodes of the open window of a layer and the timer which closes it.
+     */
+    private static final class Window {
+        private final LinkedHashMap<String, B4_Node> nodes = new LinkedHashMap<>();
+        private ScheduledFuture<?> timer;
+        private boolean isQueued;
+    }
+
+    /**
+     * @param windowMillis - time after which a window is closed. Zero closes the window on every add.
+     * @param windowSize   - number of nodes at which a window is closed.
+     * @param emitter      - emitter to which a closed window is handed.
+     */
+    B4_DiffEmitter(long windowMillis, int windowSize, Emitter emitter) {
+        this.windowMillis = windowMillis;
+        this.windowSize = windowSize;
+        this.emitter = emitter;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "B4_DiffEmitter");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * @param layerID - layer whose routing table is changed.
+     * @param nodes   - nodes added to the routing table of the layer. Nothing is sent for an empty collection.
+     */
+    void add(int layerID, Collection<B4_Node> nodes) {
+        if (nodes.isEmpty()) return;
+        synchronized (this) {
+            Window window = pending.get(layerID);
+            boolean isNewWindow = window == null;
+            if (isNewWindow) {
+                window = new Window();
+                pending.put(layerID, window);
+            }
+            for (B4_Node node : nodes) {
+                String nodeID = node.getB4node().getNodeID().toUpperCase();
+                window.nodes.remove(nodeID);
+                window.nodes.put(nodeID, node);
+            }
+            Window added = window;
+            if (windowMillis <= 0 || window.nodes.size() >= windowSize) {
+                if (!window.isQueued) {
+                    window.isQueued = true;
+                    scheduler.execute(() -> flush(layerID, added));
+                }
+            } else if (isNewWindow) {
+                window.timer = scheduler.schedule(() -> flush(layerID, added), windowMillis, TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    /**
+     * @param layerID - layer whose window is to be closed now.
+     * @param window  - window to be closed. Nothing is done if it is already closed, e.g. by a timer which lost to a
+     *                full window.
+     * <br>The window is taken out and numbered under the lock and handed to the emitter after the lock is released.
+     * It is called only on the thread of the emitter, so the tables of a layer are written in the order of their sequence.
+     */
+    private void flush(int layerID, Window window) {
+        List<B4_Node> nodes;
+        long sequence;
+        synchronized (this) {
+            if (window == null || pending.get(layerID) != window) return;
+            pending.remove(layerID);
+            if (window.timer != null) window.timer.cancel(false);
+            if (window.nodes.isEmpty()) return;
+            nodes = new ArrayList<>(window.nodes.values());
+            sequence = nextSequence(layerID);
+        }
+        emitter.emit(layerID, nodes, sequence);
+    }
+
+    /**
+     * Closes the window of every layer and waits until they are written, e.g. on shutdown.
+     */
+    void flushAll() {
+        try {
+            scheduler.submit(() -> {
+                HashMap<Integer, Window> windows;
+                synchronized (this) {
+                    windows = new HashMap<>(pending);
+                }
+                for (Integer layerID : windows.keySet()) {
+                    flush(layerID, windows.get(layerID));
+                }
+            }).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            log.error("Exception Occurred", e);
+        }
+    }
+
+    /**
+     * @param layerID - layer of the differential routing table.
+     * @return - next sequence number of the layer.
+     * <br>The sequence starts from the current time in milliseconds, so it keeps increasing across restarts of the node.
+     */
+    private long nextSequence(int layerID) {
+        Long last = sequences.get(layerID);
+        long sequence = Math.max(last == null ? 0 : last + 1, System.currentTimeMillis());
+        sequences.put(layerID, sequence);
+        return sequence;
+    }
+}
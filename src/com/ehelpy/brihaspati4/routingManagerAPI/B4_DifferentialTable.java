@@ -0,0 +1,36 @@
+package com.ehelpy.brihaspati4.routingManagerAPI;
+
+import java.util.List;
+
+/**
+ * This class holds a differential routing table received from another node, i.e. the nodes which were added to the
+ * routing table of the sender, along with the sender itself and the sequence number of the table.
+ */
+final class B4_DifferentialTable {
+    private final B4_Node selfNode;
+    private final List<B4_Node> nodes;
+    private final long sequence;
+
+    /**
+     * @param selfNode - node which sent the table.
+     * @param nodes    - nodes of the table.
+     * @param sequence - sequence number of the table, -1 if the table has none.
+     */
+    B4_DifferentialTable(B4_Node selfNode, List<B4_Node> nodes, long sequence) {
+        this.selfNode = selfNode;
+        this.nodes = nodes;
+        this.sequence = sequence;
+    }
+
+    B4_Node getSelfNode() {
+        return selfNode;
+    }
+
+    List<B4_Node> getNodes() {
+        return nodes;
+    }
+
+    long getSequence() {
+        return sequence;
+    }
+}
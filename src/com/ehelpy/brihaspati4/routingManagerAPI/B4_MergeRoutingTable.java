@@ -1,18 +1,8 @@
 package com.ehelpy.brihaspati4.routingManagerAPI;
 
 import org.apache.log4j.Logger;
-import org.w3c.dom.Document;
-import org.w3c.dom.Element;
-import org.w3c.dom.Node;
-import org.w3c.dom.NodeList;
-import org.xml.sax.SAXException;
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
-import javax.xml.parsers.ParserConfigurationException;
-import java.io.File;
+import javax.xml.stream.XMLStreamException;
 import java.io.IOException;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 /**
  * This class is used to create an object of MergerRoutingTable.
@@ -31,87 +21,45 @@ public class B4_MergeRoutingTable {
      * It is the constructor for this class.
      */
     public B4_MergeRoutingTable(String mergerRTFile) {
-       Utility utility = new Utility();
         ConfigData config = ConfigData.getInstance();
         int rt_dimension = config.getRoutingTableLength();
         int nt_dimension = config.getNeighbourTableLength();
         routingTable = new B4_Node[rt_dimension][3];
         neighbourTable = new B4_Node[nt_dimension];
-
-        DocumentBuilderFactory builderFactory;
-        DocumentBuilder documentBuilder;
-        Document doc;
         try {
-            //Get Document builder
-            builderFactory = DocumentBuilderFactory.newInstance();
-            documentBuilder = builderFactory.newDocumentBuilder();
-            //Load the input XML document,parse it and return an instance of Document class
-            doc = documentBuilder.parse(new File(mergerRTFile));
-            doc.getDocumentElement().normalize();
-            //String rootElement = doc.getDocumentElement().getNodeName();
-            NodeList nodeList = doc.getElementsByTagName("B4_Node");
-            for (int i = 0; i < nodeList.getLength(); i++) {
-                Node node = nodeList.item(i);
-                if (node.getNodeType() == node.ELEMENT_NODE) {
-                    Element element = (Element) node;
-                    //Get the value of ID attribute
-                    String index = node.getAttributes().getNamedItem("INDEX").getNodeValue();
-
-                    //Get value of all sub-Elements
-                    String nodeID = element.getElementsByTagName("NODEID").item(0).getTextContent();
-                    String nodePub = element.getElementsByTagName("PUBLICKEY").item(0).getTextContent();
-                    String hashID = element.getElementsByTagName("HASHID").item(0).getTextContent();
-                    String nodeIP = element.getElementsByTagName("NODEIP").item(0).getTextContent();
-                    String nodePort = element.getElementsByTagName("NODEPORT").item(0).getTextContent();
-                    String nodeTransport = element.getElementsByTagName("NODETRANSPORT").item(0).getTextContent();
-
-                    Pattern pattern = Pattern.compile("\\[([^]]+)\\]");
-                    Matcher matcher = pattern.matcher(index);
-                    matcher.find();
-                    int index1 = Integer.parseInt(matcher.group(1));
-                    matcher.find();
-                    int index2 = Integer.parseInt(matcher.group(1));
-                    routingTable[index1][index2] = new B4_Node(new B4_NodeTuple(nodeID, utility.strToPub(nodePub),hashID), nodeIP, nodePort, nodeTransport);
+            new B4_TableReader().read(mergerRTFile, new B4_TableReader.Handler() {
+                @Override
+                public void selfNode(B4_Node selfNode) {
+                    selfMergerNode = selfNode;
                 }
-            }
-            doc.getDocumentElement().normalize();
-            String selfNodeID = doc.getDocumentElement().getAttribute("SELF_NODE_ID");
-            String selfNodePub = doc.getDocumentElement().getAttribute("SELF_PUBLIC_KEY");
-            String selfHashID = doc.getDocumentElement().getAttribute("SELF_HASHID");
-            String selfIPAddress = doc.getDocumentElement().getAttribute("SELF_IP_ADDRESS");
-            String selfPortAddress = doc.getDocumentElement().getAttribute("SELF_PORT_ADDRESS");
-            String selfTransport = doc.getDocumentElement().getAttribute("SELF_TRANSPORT");
-            selfMergerNode = new B4_Node(new B4_NodeTuple(selfNodeID, utility.strToPub(selfNodePub),selfHashID), selfIPAddress, selfPortAddress, selfTransport);
 
-            NodeList nodeList1 = doc.getElementsByTagName("NEIGHBOUR");
-            for (int i = 0; i < nodeList1.getLength(); i++) {
-                Node node = nodeList1.item(i);
-                if (node.getNodeType() == node.ELEMENT_NODE) {
-                    Element element = (Element) node;
+                @Override
+                public void routingNode(int row, int column, B4_Node node) {
+                    routingTable[row][column] = node;
+                }
 
-                    //Get the value of ID attribute
-                    String index = node.getAttributes().getNamedItem("INDEX").getNodeValue();
-                    //Get value of all sub-Elements
-                    String nodeID = element.getElementsByTagName("NODEID").item(0).getTextContent();
-                    String nodePub = element.getElementsByTagName("PUBLICKEY").item(0).getTextContent();
-                    String hashID = element.getElementsByTagName("HASHID").item(0).getTextContent();
-                    String nodeIP = element.getElementsByTagName("NODEIP").item(0).getTextContent();
-                    String nodePort = element.getElementsByTagName("NODEPORT").item(0).getTextContent();
-                    String nodeTransport = element.getElementsByTagName("NODETRANSPORT").item(0).getTextContent();
-                    String nodeRTT = element.getElementsByTagName("NODERTT").item(0).getTextContent();
-                    Pattern pattern = Pattern.compile("\\[([^]]+)\\]");
-                    Matcher matcher = pattern.matcher(index);
-                    matcher.find();
-                    int index1 = Integer.parseInt(matcher.group(1));
-                    //System.out.println(index1);
-                    neighbourTable[index1] = new B4_Node(new B4_NodeTuple(nodeID, utility.strToPub(nodePub),hashID), nodeIP, nodePort, nodeTransport, Float.parseFloat(nodeRTT));
+                @Override
+                public void neighbourNode(int index, B4_Node node) {
+                    neighbourTable[index] = node;
                 }
-            }
-        } catch (ParserConfigurationException | IOException | SAXException e) {
+            });
+        } catch (IOException | XMLStreamException | RuntimeException e) {
             log.error("Exception Occurred",e);
         }
     }
 
+    /**
+     * @param selfMergerNode - self node of the merger table.
+     * @param neighbourTable - mergerNeighbourTable.
+     * It is used when the routing table entries of the file have already been merged while the file was read, so only
+     * the self node and the neighbour table are kept. The routing table of such an object has no rows.
+     */
+    B4_MergeRoutingTable(B4_Node selfMergerNode, B4_Node[] neighbourTable) {
+        this.routingTable = new B4_Node[0][3];
+        this.neighbourTable = neighbourTable;
+        this.selfMergerNode = selfMergerNode;
+    }
+
     /**
      * @return - mergerRoutingTable instance.
      */
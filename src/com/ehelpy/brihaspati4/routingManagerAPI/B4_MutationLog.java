@@ -0,0 +1,228 @@
+package com.ehelpy.brihaspati4.routingManagerAPI;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.zip.CRC32;
+
+/**
+ * This class is used to keep an append-only log of the changes made to the routing and neighbour table of a layer
+ * (.b4l), so that a change costs a few records on disk instead of a rewrite of the routing table file.
+ * <br>The changes are found by comparing the snapshot last logged with the snapshot to be logged. A routing table cell
+ * which now holds another node gives a cell set record, a cell emptied by a purge gives a cell cleared record and a
+ * neighbour table position which now holds another node (added, removed or re-ranked) gives a neighbour set record.
+ * <br>The log starts with a header holding the stamp of the routing table file it applies to (see B4_SnapshotFile).
+ * On restart the log is replayed over the tables loaded for the layer, but only if the routing table file is the one
+ * it was started with. Every record carries its length and CRC32, so a record cut short by a crash ends the replay.
+ * <br>When the log grows beyond LogCompaction_size records the layer is compacted, i.e. the routing table file and
+ * the snapshot file are written and the log is started again.
+ */
+class B4_MutationLog implements Closeable {
+    static final String EXTENSION = ".b4l";
+    private static final byte[] MAGIC = {'B', '4', 'W', 'L'};
+    private static final int VERSION = 2;
+    private static final int CELL_SET = 1;
+    private static final int CELL_CLEARED = 2;
+    private static final int NEIGHBOUR_SET = 3;
+    private final File logFile;
+    private DataOutputStream out;
+    private B4_RoutingTable.Snapshot logged;
+    private int records;
+
+    /**
+     * @param logFile - log file of the layer.
+     */
+    B4_MutationLog(File logFile) {
+        this.logFile = logFile;
+    }
+
+    /**
+     * @param stamp    - stamp of the routing table file holding the snapshot.
+     * @param snapshot - snapshot held by the routing table file. Later changes are logged against it.
+     *                 <br>Starts the log again, dropping every record in it.
+     */
+    synchronized void reset(B4_SnapshotFile.Stamp stamp, B4_RoutingTable.Snapshot snapshot) throws IOException {
+        close();
+        logged = snapshot;
+        records = 0;
+        out = new DataOutputStream(new FileOutputStream(logFile, false));
+        out.write(MAGIC);
+        out.writeShort(VERSION);
+        out.writeLong(stamp.getLength());
+        out.writeLong(stamp.getLastModified());
+        out.flush();
+    }
+
+    /**
+     * @param snapshot - current snapshot of the layer.
+     * @return - number of records in the log after the changes are appended.
+     * <br>The changes since the snapshot last logged are appended in one write.
+     */
+    synchronized int append(B4_RoutingTable.Snapshot snapshot) throws IOException {
+        if (out == null) throw new IOException("Mutation log " + logFile.getName() + " is not started");
+        if (snapshot == logged) return records;
+        ByteArrayOutputStream batch = new ByteArrayOutputStream();
+        DataOutputStream batchOut = new DataOutputStream(batch);
+        int count = 0;
+        B4_Node[][] previousRT = logged.getRoutingTable();
+        B4_Node[][] currentRT = snapshot.getRoutingTable();
+        for (int i = 0; i < currentRT.length && i < previousRT.length; i++) {
+            for (int j = 0; j < currentRT[i].length && j < previousRT[i].length; j++) {
+                B4_Node node = currentRT[i][j];
+                if (isSame(previousRT[i][j], node)) continue;
+                ByteArrayOutputStream payload = new ByteArrayOutputStream();
+                DataOutputStream record = new DataOutputStream(payload);
+                if (isEmpty(node)) {
+                    record.writeByte(CELL_CLEARED);
+                    record.writeShort(i);
+                    record.writeByte(j);
+                } else {
+                    record.writeByte(CELL_SET);
+                    record.writeShort(i);
+                    record.writeByte(j);
+                    B4_TableCodec.writeNode(record, node);
+                }
+                writeRecord(batchOut, payload.toByteArray());
+                count++;
+            }
+        }
+        B4_Node[] previousNT = logged.getNeighbourTable();
+        B4_Node[] currentNT = snapshot.getNeighbourTable();
+        for (int i = 0; i < currentNT.length && i < previousNT.length; i++) {
+            B4_Node node = currentNT[i];
+            if (isSame(previousNT[i], node)) continue;
+            ByteArrayOutputStream payload = new ByteArrayOutputStream();
+            DataOutputStream record = new DataOutputStream(payload);
+            record.writeByte(NEIGHBOUR_SET);
+            record.writeShort(i);
+            B4_TableCodec.writeNode(record, node == null ? emptyNode(-1) : node);
+            writeRecord(batchOut, payload.toByteArray());
+            count++;
+        }
+        batchOut.flush();
+        out.write(batch.toByteArray());
+        out.flush();
+        logged = snapshot;
+        records += count;
+        return records;
+    }
+
+    /**
+     * @return - number of records in the log.
+     */
+    synchronized int size() {
+        return records;
+    }
+
+    /**
+     * @param logFile        - log file of the layer.
+     * @param stamp          - stamp of the routing table file from which the tables are loaded.
+     * @param routingTable   - routing table loaded for the layer, changed in place.
+     * @param neighbourTable - neighbour table loaded for the layer, changed in place.
+     * @return - number of records replayed, -1 if there is no log or it was started with another routing table file.
+     * <br>Replay stops at the first record which is cut short or fails its CRC32.
+     */
+    static int replay(File logFile, B4_SnapshotFile.Stamp stamp, B4_Node[][] routingTable, B4_Node[] neighbourTable) throws IOException {
+        if (!logFile.exists()) return -1;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(logFile)))) {
+            byte[] magic = new byte[MAGIC.length];
+            try {
+                in.readFully(magic);
+                for (int i = 0; i < MAGIC.length; i++) {
+                    if (magic[i] != MAGIC[i]) return -1;
+                }
+                if (in.readUnsignedShort() != VERSION) return -1;
+                if (!stamp.matches(in.readLong(), in.readLong())) return -1;
+            } catch (EOFException e) {
+                return -1;
+            }
+            int replayed = 0;
+            while (true) {
+                byte[] payload = readRecord(in);
+                if (payload == null) return replayed;
+                apply(new DataInputStream(new ByteArrayInputStream(payload)), routingTable, neighbourTable);
+                replayed++;
+            }
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (out == null) return;
+        try {
+            out.close();
+        } finally {
+            out = null;
+        }
+    }
+
+    private static void apply(DataInputStream record, B4_Node[][] routingTable, B4_Node[] neighbourTable) throws IOException {
+        int type = record.readUnsignedByte();
+        if (type == CELL_SET || type == CELL_CLEARED) {
+            int row = record.readUnsignedShort();
+            int column = record.readUnsignedByte();
+            B4_Node node = type == CELL_SET ? B4_TableCodec.readNode(record) : emptyNode(0);
+            if (row < routingTable.length && column < routingTable[row].length) routingTable[row][column] = node;
+        } else if (type == NEIGHBOUR_SET) {
+            int index = record.readUnsignedShort();
+            B4_Node node = B4_TableCodec.readNode(record);
+            if (index < neighbourTable.length) neighbourTable[index] = node;
+        } else {
+            throw new IOException("Invalid record " + type + " in mutation log");
+        }
+    }
+
+    private static void writeRecord(DataOutputStream out, byte[] payload) throws IOException {
+        CRC32 crc = new CRC32();
+        crc.update(payload, 0, payload.length);
+        out.writeInt(payload.length);
+        out.writeInt((int) crc.getValue());
+        out.write(payload);
+    }
+
+    /**
+     * @return - payload of the next record, null at the end of the log or at a record which is cut short or corrupt.
+     */
+    private static byte[] readRecord(DataInputStream in) throws IOException {
+        try {
+            int length = in.readInt();
+            int checksum = in.readInt();
+            if (length < 0 || length > 1 << 20) return null;
+            byte[] payload = new byte[length];
+            in.readFully(payload);
+            CRC32 crc = new CRC32();
+            crc.update(payload, 0, payload.length);
+            return (int) crc.getValue() == checksum ? payload : null;
+        } catch (EOFException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Two empty entries are the same even if they are different objects, e.g. the padding of a re-ranked neighbour table.
+     */
+    private static boolean isSame(B4_Node previous, B4_Node current) {
+        if (previous == current) return true;
+        return isEmpty(previous) && isEmpty(current) && (previous == null || current == null || previous.getRtt() == current.getRtt());
+    }
+
+    private static boolean isEmpty(B4_Node node) {
+        return node == null || node.getB4node().getNodeID() == null || node.getB4node().getNodeID().isEmpty();
+    }
+
+    /**
+     * @param rtt - RTT of the entry, 0 for a routing table cell and -1 for a neighbour table entry.
+     * @return - empty entry, same as the one put by a purge.
+     */
+    private static B4_Node emptyNode(float rtt) {
+        return new B4_Node(new B4_NodeTuple("", null, ""), "", "", "", rtt);
+    }
+}
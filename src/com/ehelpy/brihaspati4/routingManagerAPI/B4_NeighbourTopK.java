@@ -0,0 +1,101 @@
+package com.ehelpy.brihaspati4.routingManagerAPI;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Objects;
+import java.util.TreeSet;
+
+/**
+ * This class is used to merge nodes into a neighbour table.
+ * It keeps at most k nodes ordered by RTT, lowest first, and each node only once.
+ * A node which is already present is refreshed with the new RTT and moved to its new position.
+ * If it is offered again with the same RTT, key and address it is left as it is.
+ * Among nodes with equal RTT the one which was added earlier stays ahead.
+ * Insertion and removal are O(log k), so a large neighbour table can be merged without shifting the array.
+ */
+class B4_NeighbourTopK {
+    private final int capacity;
+    private final TreeSet<Entry> ranking;
+    private final HashMap<String, Entry> byNodeID;
+    private long sequence;
+
+    /**
+     * @param capacity - maximum number of nodes, i.e. the neighbour table dimension.
+     * @param neighbourTable - current neighbour table, its nodes are added in their order. Empty entries are skipped.
+     */
+    B4_NeighbourTopK(int capacity, B4_Node[] neighbourTable) {
+        this.capacity = capacity;
+        this.ranking = new TreeSet<>((a, b) -> {
+            int difference = Float.compare(a.rtt, b.rtt);
+            return difference != 0 ? difference : Long.compare(a.sequence, b.sequence);
+        });
+        this.byNodeID = new HashMap<>();
+        for (B4_Node node : neighbourTable) {
+            offer(node);
+        }
+    }
+
+    /**
+     * @param node - node to be merged. Nodes without nodeID or with RTT -1 are ignored.
+     * @return - true if the neighbour table is changed.
+     */
+    boolean offer(B4_Node node) {
+        if (node == null || node.getRtt() < 0 || node.getB4node().getNodeID() == null || node.getB4node().getNodeID().isEmpty())
+            return false;
+        String nodeID = node.getB4node().getNodeID().toUpperCase();
+        Entry existing = byNodeID.get(nodeID);
+        if (existing != null) {
+            if (existing.node == node || isUnchanged(existing, node)) return false;
+            ranking.remove(existing);
+            byNodeID.remove(nodeID);
+        } else if (ranking.size() >= capacity && !ranking.isEmpty() && ranking.last().rtt <= node.getRtt()) {
+            return false;
+        }
+        Entry entry = new Entry(nodeID, node, sequence++);
+        ranking.add(entry);
+        byNodeID.put(nodeID, entry);
+        if (ranking.size() > capacity) {
+            Entry evicted = ranking.pollLast();
+            byNodeID.remove(evicted.nodeID);
+        }
+        return true;
+    }
+
+    private static boolean isUnchanged(Entry existing, B4_Node node) {
+        B4_Node current = existing.node;
+        return existing.rtt == node.getRtt()
+                && Arrays.equals(current.getB4node().getEncodedKey(), node.getB4node().getEncodedKey())
+                && Objects.equals(current.getIpAddress(), node.getIpAddress())
+                && Objects.equals(current.getPortAddress(), node.getPortAddress())
+                && Objects.equals(current.getTransport(), node.getTransport());
+    }
+
+    /**
+     * @return - neighbour table of capacity length sorted on RTT. Unused positions hold an empty node with RTT -1.
+     */
+    B4_Node[] toArray() {
+        B4_Node[] neighbourTable = new B4_Node[capacity];
+        int i = 0;
+        for (Entry entry : ranking) {
+            neighbourTable[i++] = entry.node;
+        }
+        for (; i < capacity; i++) {
+            neighbourTable[i] = new B4_Node(new B4_NodeTuple("", null, ""), "", "", "", -1);
+        }
+        return neighbourTable;
+    }
+
+    private static final class Entry {
+        private final String nodeID;
+        private final B4_Node node;
+        private final float rtt;
+        private final long sequence;
+
+        private Entry(String nodeID, B4_Node node, long sequence) {
+            this.nodeID = nodeID;
+            this.node = node;
+            this.rtt = node.getRtt();
+            this.sequence = sequence;
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package com.ehelpy.brihaspati4.routingManagerAPI;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+/**
+ * This class is used to keep the result of findNextHop for recently queried keys.
+ * Each entry is keyed by layer and packed key and remembers the epoch of the routing table it was computed on.
+ * An entry is valid only as long as the epoch of the layer is unchanged.
+ * Concurrent misses for the same key wait for a single computation instead of computing the next hop again.
+ * The keys are spread over segments, each an access ordered map holding its share of the capacity, so a full segment
+ * drops its least recently used entry in constant time and lookups of different segments do not wait for each other.
+ */
+class B4_NextHopCache {
+    private static final int SEGMENTS = 16;
+    private final int capacity;
+    private final Segment[] segments;
+
+    /**
+     * @param capacity - maximum number of keys held in the cache. Zero disables the cache.
+     */
+    B4_NextHopCache(int capacity) {
+        this.capacity = capacity;
+        int count = Math.max(1, Math.min(SEGMENTS, capacity));
+        this.segments = new Segment[count];
+        for (int i = 0; i < count; i++) {
+            segments[i] = new Segment(Math.max(1, capacity / count));
+        }
+    }
+
+    /**
+     * @param layerID - layer on which the next hop is computed.
+     * @param hashIdP - key in packed form. The array must not be modified after this call.
+     * @param epoch - current epoch of the routing table of the layer.
+     * @param loader - computes the next hop when the cache does not hold a valid entry.
+     * @return - next hop for the key, null if selfNode is the root node.
+     */
+    B4_Node get(int layerID, byte[] hashIdP, long epoch, Supplier<B4_Node> loader) {
+        if (capacity <= 0) return loader.get();
+        Key cacheKey = new Key(layerID, hashIdP);
+        Segment segment = segments[((cacheKey.hash ^ (cacheKey.hash >>> 16)) & 0x7FFFFFFF) % segments.length];
+        Entry entry;
+        synchronized (segment) {
+            Entry existing = segment.get(cacheKey);
+            if (existing != null && existing.epoch >= epoch) {
+                entry = existing;
+            } else {
+                entry = new Entry(epoch);
+                segment.put(cacheKey, entry);
+            }
+        }
+        if (entry.claimed.compareAndSet(false, true)) {
+            try {
+                entry.result.complete(loader.get());
+            } catch (RuntimeException e) {
+                synchronized (segment) {
+                    if (segment.get(cacheKey) == entry) segment.remove(cacheKey);
+                }
+                entry.result.completeExceptionally(e);
+                throw e;
+            }
+        }
+        try {
+            return entry.result.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return loader.get();
+        } catch (ExecutionException e) {
+            return loader.get();
+        }
+    }
+
+    /**
+     * Removes all the entries. Used when the local NodeID changes.
+     */
+    void clear() {
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                segment.clear();
+            }
+        }
+    }
+
+    /**
+     * This class holds the entries of one segment in access order. Once it holds more than its capacity the least
+     * recently used entry is removed. It is used only while holding its own lock.
+     */
+    private static final class Segment extends LinkedHashMap<Key, Entry> {
+        private static final long serialVersionUID = 1L;
+        private final int capacity;
+
+        private Segment(int capacity) {
+            super(16, 0.75f, true);
+            this.capacity = capacity;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest) {
+            return size() > capacity;
+        }
+    }
+
+    private static final class Key {
+        private final int layerID;
+        private final byte[] hashIdP;
+        private final int hash;
+
+        private Key(int layerID, byte[] hashIdP) {
+            this.layerID = layerID;
+            this.hashIdP = hashIdP;
+            this.hash = 31 * layerID + Arrays.hashCode(hashIdP);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) return false;
+            Key other = (Key) o;
+            return layerID == other.layerID && Arrays.equals(hashIdP, other.hashIdP);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    private static final class Entry {
+        private final long epoch;
+        private final AtomicBoolean claimed = new AtomicBoolean();
+        private final CompletableFuture<B4_Node> result = new CompletableFuture<>();
+
+        private Entry(long epoch) {
+            this.epoch = epoch;
+        }
+    }
+}
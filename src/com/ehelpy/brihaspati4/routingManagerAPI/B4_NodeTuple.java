@@ -1,15 +1,30 @@
 package com.ehelpy.brihaspati4.routingManagerAPI;
 
+import org.apache.log4j.Logger;
+
+import java.nio.ByteBuffer;
+import java.security.KeyFactory;
+import java.security.NoSuchAlgorithmException;
 import java.security.PublicKey;
+import java.security.spec.InvalidKeySpecException;
+import java.security.spec.X509EncodedKeySpec;
+import java.util.Arrays;
 
 /**
  * This class will is used to create an Object which contains tuple(Three parameters)- NodeID,PublicKey and HashID
  * This class is used to create another object called B4_Node.
+ * The nodeID is also kept in a packed 160 bit form (two nibbles per byte) so that the routing algorithms can read
+ * nibbles directly without converting characters every time.
+ * A tuple loaded from a table snapshot holds the public key in its encoded form and decodes it on first use.
  */
 public class B4_NodeTuple {
+    private static final Logger log = Logger.getLogger(B4_NodeTuple.class);
+    static final int ID_BYTES = 20;
     private final String nodeID;
-    private final PublicKey publicKey;
+    private final byte[] encodedKey;
+    private volatile PublicKey publicKey;
     private final String hashID;
+    private final byte[] packedNodeID;
 
     /**
      * @param nodeID - nodeID is taken as the argument.
@@ -20,7 +35,22 @@ public class B4_NodeTuple {
     public B4_NodeTuple(String nodeID, PublicKey publicKey,String hashID) {
         this.nodeID = nodeID;
         this.publicKey = publicKey;
+        this.encodedKey = null;
         this.hashID=hashID;
+        this.packedNodeID = packNodeID(nodeID);
+    }
+
+    /**
+     * @param nodeID - nodeID is taken as the argument.
+     * @param packedNodeID - nodeID in packed form, same as packNodeID(nodeID).
+     * @param encodedKey - public key in X.509 encoded form, null if there is no key. It is decoded on first use.
+     * @param hashID - hashID is taken as the argument.
+     */
+    B4_NodeTuple(String nodeID, byte[] packedNodeID, byte[] encodedKey, String hashID) {
+        this.nodeID = nodeID;
+        this.encodedKey = encodedKey;
+        this.hashID = hashID;
+        this.packedNodeID = packedNodeID;
     }
 
     /**
@@ -34,7 +64,25 @@ public class B4_NodeTuple {
      * @return - publicKey associated with the current node.
      */
     public PublicKey getPublicKey() {
-        return publicKey;
+        PublicKey key = publicKey;
+        if (key == null && encodedKey != null) {
+            try {
+                key = KeyFactory.getInstance("RSA").generatePublic(new X509EncodedKeySpec(encodedKey));
+                publicKey = key;
+            } catch (NoSuchAlgorithmException | InvalidKeySpecException e) {
+                log.error("Exception Occurred", e);
+            }
+        }
+        return key;
+    }
+
+    /**
+     * @return - publicKey in X.509 encoded form without decoding a key which is not decoded yet, null if there is no key.
+     */
+    byte[] getEncodedKey() {
+        if (encodedKey != null) return encodedKey;
+        PublicKey key = publicKey;
+        return key == null ? null : key.getEncoded();
     }
 
     /**
@@ -42,4 +90,94 @@ public class B4_NodeTuple {
      */
     public String getHashID(){return hashID;}
 
+    /**
+     * @return - nodeID in packed form. The array is shared and must not be modified.
+     */
+    byte[] getPackedNodeID() {
+        return packedNodeID;
+    }
+
+    /**
+     * @param index - position of the nibble in the nodeID.
+     * @return - value (0-15) of the nibble at the given position.
+     */
+    int getNibble(int index) {
+        return nibble(packedNodeID, index);
+    }
+
+    /**
+     * @param hexID - nodeID/hashID in hex format.
+     * @return - packed form of the ID. Empty or null ID gives all zero bytes, invalid characters are taken as zero.
+     */
+    static byte[] packNodeID(String hexID) {
+        byte[] packed = new byte[ID_BYTES];
+        if (hexID == null) return packed;
+        int length = Math.min(hexID.length(), ID_BYTES * 2);
+        for (int i = 0; i < length; i++) {
+            int value = Character.digit(hexID.charAt(i), 16);
+            if (value < 0) value = 0;
+            if ((i & 1) == 0) packed[i >> 1] = (byte) (value << 4);
+            else packed[i >> 1] = (byte) (packed[i >> 1] | value);
+        }
+        return packed;
+    }
+
+    /**
+     * @param key - key in binary form, e.g. a digest.
+     * @return - packed form of the key. Only the first ID_BYTES bytes are used, a shorter key is padded with zero bytes,
+     * which is the same result packNodeID gives for the hex form of the key.
+     */
+    static byte[] packKey(byte[] key) {
+        return Arrays.copyOf(key, ID_BYTES);
+    }
+
+    /**
+     * @param key - key in binary form, read from its position to its limit. The position of the buffer is not changed.
+     * @return - packed form of the key, see packKey(byte[]).
+     */
+    static byte[] packKey(ByteBuffer key) {
+        byte[] packed = new byte[ID_BYTES];
+        int length = Math.min(key.remaining(), ID_BYTES);
+        int position = key.position();
+        for (int i = 0; i < length; i++) {
+            packed[i] = key.get(position + i);
+        }
+        return packed;
+    }
+
+    /**
+     * @param packedID - ID in packed form.
+     * @param index - position of the nibble.
+     * @return - value (0-15) of the nibble at the given position.
+     */
+    static int nibble(byte[] packedID, int index) {
+        int value = packedID[index >> 1];
+        return (index & 1) == 0 ? (value >> 4) & 0x0F : value & 0x0F;
+    }
+
+    /**
+     * @param a - first ID in packed form.
+     * @param b - second ID in packed form.
+     * @return - number of leading nibbles which are equal in both the IDs.
+     */
+    static int commonPrefixLength(byte[] a, byte[] b) {
+        for (int i = 0; i < ID_BYTES; i++) {
+            int difference = (a[i] ^ b[i]) & 0xFF;
+            if (difference != 0) return (difference & 0xF0) != 0 ? 2 * i : 2 * i + 1;
+        }
+        return ID_BYTES * 2;
+    }
+
+    /**
+     * @param a - first ID in packed form.
+     * @param b - second ID in packed form.
+     * @return - negative, zero or positive value as the first ID is numerically less than, equal to or greater than the second.
+     */
+    static int compareUnsigned(byte[] a, byte[] b) {
+        for (int i = 0; i < ID_BYTES; i++) {
+            int difference = (a[i] & 0xFF) - (b[i] & 0xFF);
+            if (difference != 0) return difference;
+        }
+        return 0;
+    }
 }
@@ -0,0 +1,116 @@
+package com.ehelpy.brihaspati4.routingManagerAPI;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * This class is used to keep a sorted ring of all the nodes known to a layer.
+ * Nodes present in the routing table, the neighbour table and the tables received for merging are added to the ring.
+ * The ring is bounded; when it is full the node which was seen least recently is removed.
+ * It is used to find the k nodes closest to a key on the ring.
+ */
+class B4_PeerIndex {
+    private static final BigInteger RING_SIZE = BigInteger.ONE.shiftLeft(B4_NodeTuple.ID_BYTES * 8);
+    private final int capacity;
+    private final TreeMap<byte[], B4_Node> ring;
+    private final LinkedHashMap<String, B4_Node> recentlySeen;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * @param capacity - maximum number of nodes held in the ring.
+     */
+    B4_PeerIndex(int capacity) {
+        this.capacity = capacity;
+        this.ring = new TreeMap<>(B4_NodeTuple::compareUnsigned);
+        this.recentlySeen = new LinkedHashMap<>(16, 0.75f, true);
+    }
+
+    /**
+     * @param node - node to be added to the ring. Empty entries are ignored.
+     * Adding a node which is already present replaces it and marks it as recently seen.
+     */
+    void add(B4_Node node) {
+        if (node == null || node.getB4node().getNodeID() == null || node.getB4node().getNodeID().isEmpty()) return;
+        lock.writeLock().lock();
+        try {
+            ring.put(node.getB4node().getPackedNodeID(), node);
+            recentlySeen.put(node.getB4node().getNodeID().toUpperCase(), node);
+            if (recentlySeen.size() > capacity) {
+                Iterator<Map.Entry<String, B4_Node>> iterator = recentlySeen.entrySet().iterator();
+                B4_Node eldest = iterator.next().getValue();
+                iterator.remove();
+                ring.remove(eldest.getB4node().getPackedNodeID());
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @param node - node to be removed from the ring.
+     */
+    void remove(B4_Node node) {
+        if (node == null || node.getB4node().getNodeID() == null || node.getB4node().getNodeID().isEmpty()) return;
+        lock.writeLock().lock();
+        try {
+            ring.remove(node.getB4node().getPackedNodeID());
+            recentlySeen.remove(node.getB4node().getNodeID().toUpperCase());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @param key - key in packed form.
+     * @param k - number of nodes required.
+     * @param exclude - node which is not to be returned (normally the local node), may be null.
+     * @return - up to k nodes ordered by their distance from the key on the ring, closest first.
+     * <br>The k successors and k predecessors of the key are collected walking the ring in both directions and
+     * the closest k of them are returned.
+     */
+    List<B4_Node> closest(byte[] key, int k, byte[] exclude) {
+        List<B4_Node> candidates = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            int size = ring.size();
+            if (k <= 0 || size == 0) return candidates;
+            int steps = Math.min(k + 1, size);
+            Map.Entry<byte[], B4_Node> entry = ring.ceilingEntry(key);
+            for (int i = 0; i < steps; i++) {
+                if (entry == null) entry = ring.firstEntry();
+                candidates.add(entry.getValue());
+                entry = ring.higherEntry(entry.getKey());
+            }
+            entry = ring.lowerEntry(key);
+            for (int i = 0; i < steps && candidates.size() < size; i++) {
+                if (entry == null) entry = ring.lastEntry();
+                if (!candidates.contains(entry.getValue())) candidates.add(entry.getValue());
+                entry = ring.lowerEntry(entry.getKey());
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        if (exclude != null) {
+            candidates.removeIf(node -> B4_NodeTuple.compareUnsigned(node.getB4node().getPackedNodeID(), exclude) == 0);
+        }
+        BigInteger keyValue = new BigInteger(1, key);
+        candidates.sort((a, b) -> distance(keyValue, a).compareTo(distance(keyValue, b)));
+        return candidates.size() > k ? new ArrayList<>(candidates.subList(0, k)) : candidates;
+    }
+
+    /**
+     * @param key - key as unsigned number.
+     * @param node - node on the ring.
+     * @return - shorter of the clockwise and anticlockwise distance between key and node.
+     */
+    private static BigInteger distance(BigInteger key, B4_Node node) {
+        BigInteger clockwise = new BigInteger(1, node.getB4node().getPackedNodeID()).subtract(key).mod(RING_SIZE);
+        return clockwise.min(RING_SIZE.subtract(clockwise));
+    }
+}
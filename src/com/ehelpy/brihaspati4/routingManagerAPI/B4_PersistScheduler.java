@@ -0,0 +1,88 @@
+package com.ehelpy.brihaspati4.routingManagerAPI;
+
+import org.apache.log4j.Logger;
+
+import java.util.ArrayList;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This class is used to save the tables of a layer in the background instead of on the thread which changed them.
+ * A changed layer is marked dirty and saved by a background thread, at most once every PersistInterval_ms
+ * milliseconds. All the changes made to a layer while it waits are saved by one write.
+ * <br>Marking a layer dirty never waits for a write, so merges and purges do not block on disk I/O.
+ * <br>Every layer is written under its own lock, so a layer saved on demand never waits for the write of another layer.
+ */
+class B4_PersistScheduler {
+    private static final Logger log = Logger.getLogger(B4_PersistScheduler.class);
+    private final long intervalMillis;
+    private final Writer writer;
+    private final Set<Integer> dirtyLayers = ConcurrentHashMap.newKeySet();
+    private final ConcurrentHashMap<Integer, Long> lastWrites = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Integer, Object> writeLocks = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService scheduler;
+
+    /**
+     * This interface saves the tables of a layer.
+     */
+    interface Writer {
+        /**
+         * @param layerID - layer to be saved.
+         */
+        void write(int layerID);
+    }
+
+    /**
+     * @param intervalMillis - minimum time between two writes of a layer. Zero saves a layer as soon as the background thread gets to it.
+     * @param writer         - writer to which a dirty layer is handed.
+     */
+    B4_PersistScheduler(long intervalMillis, Writer writer) {
+        this.intervalMillis = intervalMillis;
+        this.writer = writer;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "B4_PersistScheduler");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * @param layerID - layer whose tables are changed. A layer which is already waiting is not scheduled again.
+     */
+    void markDirty(int layerID) {
+        if (!dirtyLayers.add(layerID)) return;
+        Long lastWrite = lastWrites.get(layerID);
+        long delay = lastWrite == null ? 0 : Math.max(0, lastWrite + intervalMillis - System.currentTimeMillis());
+        scheduler.schedule(() -> flush(layerID), delay, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @param layerID - layer to be saved now if it is dirty.
+     * <br>The time of the write is recorded before the layer is marked clean, so a change made in between is scheduled
+     * a full interval later. A change made during the write is saved by the next write.
+     */
+    void flush(int layerID) {
+        synchronized (writeLocks.computeIfAbsent(layerID, id -> new Object())) {
+            if (!dirtyLayers.contains(layerID)) return;
+            lastWrites.put(layerID, System.currentTimeMillis());
+            dirtyLayers.remove(layerID);
+            try {
+                writer.write(layerID);
+            } catch (RuntimeException e) {
+                log.error("Exception Occurred", e);
+            }
+        }
+    }
+
+    /**
+     * Saves every dirty layer now, e.g. on shutdown.
+     */
+    void flushAll() {
+        for (Integer layerID : new ArrayList<>(dirtyLayers)) {
+            flush(layerID);
+        }
+    }
+}
@@ -1,34 +1,277 @@
 package com.ehelpy.brihaspati4.routingManagerAPI;
 
+import org.apache.log4j.Logger;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantLock;
+
 /**
  * This class is used to create an object of B4_routingTable.
  * It contains routing an neighbour table parameters of a node.
  * This class will create a routing table and neighbour table array based on the dimension provided as the argument.
+ * The tables are published as immutable snapshots through an atomic reference, so any number of readers get a
+ * consistent table without locking.
+ * A writer takes the writer lock, builds the next version on a copy and publishes it. The epoch of a snapshot is
+ * incremented on every publish so that results computed on an older table can be discarded.
+ * Every snapshot also carries the range of keys for which the local node is the root, so the root check does not
+ * need to walk the routing table.
+ * Each layer has its own single thread executor on which the work received for the layer (merges, differential merges and
+ * neighbour table updates) is run in order, so different layers are processed in parallel.
  */
  class B4_RoutingTable {
-    private final B4_Node[][] routingTable;
-    private final B4_Node[] neighbourTable;
+    private static final Logger log = Logger.getLogger(B4_RoutingTable.class);
+    private final AtomicReference<Snapshot> snapshot;
+    private final ReentrantLock writerLock = new ReentrantLock();
+    private final B4_PeerIndex peerIndex;
+    private final ExecutorService executor;
+    private volatile PublishListener publishListener;
 
     /**
+     * This interface is informed of every snapshot published for the layer.
+     */
+    interface PublishListener {
+        /**
+         * @param previous - snapshot replaced by the publish.
+         * @param current  - snapshot published.
+         * It is called by the writer while holding the writer lock, so it must return quickly.
+         */
+        void published(Snapshot previous, Snapshot current);
+    }
+
+    /**
+     * @param layerID - layer of the routing table, used to name the thread of the layer.
      * @param rt_dimension - routing table dimension is taken as argument.
      * @param nt_dimension - neighbour table dimension is taken as argument.
+     * @param peerIndexSize - maximum number of nodes kept in the peer index of the layer.
+     */
+    B4_RoutingTable(int layerID,int rt_dimension,int nt_dimension,int peerIndexSize) {
+        this.snapshot = new AtomicReference<>(new Snapshot(new B4_Node[rt_dimension][3], new B4_Node[nt_dimension], 0, null, null));
+        this.peerIndex = new B4_PeerIndex(peerIndexSize);
+        this.executor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "B4_RoutingTable-" + layerID);
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * @param task - work on the layer, run after all the work queued before it.
+     * An exception thrown by the task is logged and does not stop the work queued after it.
+     * A task received after the layer is shut down is dropped.
+     */
+    void execute(Runnable task) {
+        try {
+            executor.execute(() -> {
+                try {
+                    task.run();
+                } catch (RuntimeException e) {
+                    log.error("Exception Occurred", e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            log.debug("Layer is shut down, task dropped");
+        }
+    }
+
+    /**
+     * Stops the thread of the layer once the routing table is replaced. The work still queued for the layer is dropped,
+     * as it would only update a table which is no longer used.
+     */
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * @param publishListener - listener informed of every publish of the layer, null to remove it.
      */
-    B4_RoutingTable(int rt_dimension,int nt_dimension) {
-        this.routingTable = new B4_Node[rt_dimension][3];
-        this.neighbourTable = new B4_Node[nt_dimension];
+    void setPublishListener(PublishListener publishListener) {
+        this.publishListener = publishListener;
     }
 
     /**
-     * @return - routingTable
+     * @return - sorted ring of all the nodes known to the layer.
+     */
+    B4_PeerIndex getPeerIndex() {
+        return peerIndex;
+    }
+
+    /**
+     * @return - current snapshot of the routing and neighbour table.
+     */
+    Snapshot getSnapshot() {
+        return snapshot.get();
+    }
+
+    /**
+     * @return - routingTable of the current snapshot. The array must not be modified.
      */
     B4_Node[][] getRoutingTable() {
-        return routingTable;
+        return snapshot.get().getRoutingTable();
     }
 
     /**
-     * @return - neighbourTable
+     * @return - neighbourTable of the current snapshot. The array must not be modified.
      */
     B4_Node[] getNeighbourTable() {
-        return neighbourTable;
+        return snapshot.get().getNeighbourTable();
+    }
+
+    /**
+     * @return - epoch of the current snapshot.
+     */
+    long getEpoch() {
+        return snapshot.get().getEpoch();
+    }
+
+    /**
+     * @return - true once the tables of the layer have been loaded. Layers whose access is disabled in the config file are never loaded.
+     */
+    boolean isInitialised() {
+        return snapshot.get().getEpoch() > 0;
+    }
+
+    /**
+     * Acquires the writer lock of the layer. Only the holder of the lock can publish a new snapshot.
+     */
+    void lockWriter() {
+        writerLock.lock();
+    }
+
+    /**
+     * Releases the writer lock of the layer.
+     */
+    void unlockWriter() {
+        writerLock.unlock();
+    }
+
+    /**
+     * @return - copy of the current routingTable which the writer can modify.
+     */
+    B4_Node[][] copyRoutingTable() {
+        B4_Node[][] current = getRoutingTable();
+        B4_Node[][] copy = new B4_Node[current.length][];
+        for (int i = 0; i < current.length; i++) {
+            copy[i] = current[i].clone();
+        }
+        return copy;
+    }
+
+    /**
+     * @return - copy of the current neighbourTable which the writer can modify.
+     */
+    B4_Node[] copyNeighbourTable() {
+        return getNeighbourTable().clone();
+    }
+
+    /**
+     * @param routingTable - next version of the routingTable. It must not be modified after this call.
+     * @param neighbourTable - next version of the neighbourTable. It must not be modified after this call.
+     * @param localNodeIdP - local nodeID in packed form.
+     * The responsibility range is computed again only if the routingTable or the local nodeID has changed.
+     */
+    void publish(B4_Node[][] routingTable, B4_Node[] neighbourTable, byte[] localNodeIdP) {
+        if (!writerLock.isHeldByCurrentThread())
+            throw new IllegalStateException("Writer lock of the layer is not held");
+        Snapshot current = snapshot.get();
+        B4_Node predecessor;
+        if (routingTable == current.getRoutingTable() && localNodeIdP == current.localNodeIdP) predecessor = current.getPredecessor();
+        else predecessor = findPredecessor(routingTable, localNodeIdP);
+        Snapshot next = new Snapshot(routingTable, neighbourTable, current.getEpoch() + 1, predecessor, localNodeIdP);
+        snapshot.set(next);
+        PublishListener listener = publishListener;
+        if (listener != null) listener.published(current, next);
+    }
+
+    /**
+     * @param routingTable - routingTable of the layer.
+     * @param localNodeIdP - local nodeID in packed form.
+     * @return - entry of the routingTable which is the immediate predecessor of the local node on the ring, null if the
+     * routingTable has no entry other than the local node.
+     */
+    private static B4_Node findPredecessor(B4_Node[][] routingTable, byte[] localNodeIdP) {
+        B4_Node predecessor = null;
+        for (B4_Node[] row : routingTable) {
+            for (B4_Node node : row) {
+                if (node == null || node.getB4node().getNodeID().isEmpty()) continue;
+                byte[] nodeIdP = node.getB4node().getPackedNodeID();
+                if (B4_NodeTuple.compareUnsigned(nodeIdP, localNodeIdP) == 0) continue;
+                if (predecessor == null || Snapshot.isBetween(predecessor.getB4node().getPackedNodeID(), nodeIdP, localNodeIdP))
+                    predecessor = node;
+            }
+        }
+        return predecessor;
+    }
+
+    /**
+     * This class holds one immutable version of the routing and neighbour table of a layer.
+     */
+    static final class Snapshot {
+        private final B4_Node[][] routingTable;
+        private final B4_Node[] neighbourTable;
+        private final long epoch;
+        private final B4_Node predecessor;
+        private final byte[] localNodeIdP;
+        private volatile B4_TableDigest digest;
+
+        private Snapshot(B4_Node[][] routingTable, B4_Node[] neighbourTable, long epoch, B4_Node predecessor, byte[] localNodeIdP) {
+            this.routingTable = routingTable;
+            this.neighbourTable = neighbourTable;
+            this.epoch = epoch;
+            this.predecessor = predecessor;
+            this.localNodeIdP = localNodeIdP;
+        }
+
+        /**
+         * @return - Merkle digest of the routingTable, computed on first use and kept with the snapshot.
+         */
+        B4_TableDigest getDigest() {
+            B4_TableDigest tableDigest = digest;
+            if (tableDigest == null) {
+                tableDigest = new B4_TableDigest(routingTable);
+                digest = tableDigest;
+            }
+            return tableDigest;
+        }
+
+        /**
+         * @return - immediate predecessor of the local node among the entries of the routingTable, null if there is none.
+         */
+        B4_Node getPredecessor() {
+            return predecessor;
+        }
+
+        /**
+         * @param hashIdP - hashID in packed form.
+         * @return - true if the hashID lies in (predecessor, local node], i.e. the local node is the root for the hashID.
+         * With no predecessor the local node is the root for every hashID.
+         */
+        boolean isRootFor(byte[] hashIdP) {
+            if (predecessor == null || localNodeIdP == null) return true;
+            return isBetween(predecessor.getB4node().getPackedNodeID(), hashIdP, localNodeIdP);
+        }
+
+        /**
+         * @return - true if id lies in the ring interval (from, to]; the interval wraps around the end of the ring when from is not less than to.
+         */
+        static boolean isBetween(byte[] from, byte[] id, byte[] to) {
+            if (B4_NodeTuple.compareUnsigned(from, to) < 0)
+                return B4_NodeTuple.compareUnsigned(from, id) < 0 && B4_NodeTuple.compareUnsigned(id, to) <= 0;
+            return B4_NodeTuple.compareUnsigned(from, id) < 0 || B4_NodeTuple.compareUnsigned(id, to) <= 0;
+        }
+
+        B4_Node[][] getRoutingTable() {
+            return routingTable;
+        }
+
+        B4_Node[] getNeighbourTable() {
+            return neighbourTable;
+        }
+
+        long getEpoch() {
+            return epoch;
+        }
     }
 }
@@ -0,0 +1,217 @@
+package com.ehelpy.brihaspati4.routingManagerAPI;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * This class is used to keep a snapshot of the routing and neighbour table of a layer in a fixed layout file (.b4s),
+ * so that the tables can be loaded on restart without parsing the routing table file of the layer.
+ * <br>The file holds a header, one fixed size slot for every routing table and neighbour table entry, and a heap with
+ * the variable length details of the nodes. A slot holds the packed nodeID and RTT of the entry and the position of its
+ * details in the heap, so an entry is found by its index without reading the entries before it.
+ * <br>The file is read through a memory mapping. The public keys are kept in their encoded form and decoded on first
+ * use (see B4_NodeTuple), so no key is decoded while loading.
+ * <br>The header records the length and modification time of the routing table file the snapshot was taken with. A
+ * snapshot is used only while the routing table file is unchanged, otherwise the routing table file is read as before.
+ */
+class B4_SnapshotFile {
+    static final String EXTENSION = ".b4s";
+    private static final byte[] MAGIC = {'B', '4', 'S', 'N'};
+    private static final int VERSION = 2;
+    private static final int COLUMNS = 3;
+    private static final int HEADER_BYTES = 40;
+    private static final int SLOT_BYTES = 1 + B4_NodeTuple.ID_BYTES + 4 + 4 + 4;
+    private static final int EMPTY = 0;
+    private static final int PRESENT = 1;
+
+    private B4_SnapshotFile() {
+    }
+
+    /**
+     * This class identifies the content of a routing table file by its length and modification time, which are taken
+     * from the file system without reading the file. The routing table file is only replaced by the layer itself, which
+     * stamps the snapshot and the log again after every write.
+     */
+    static final class Stamp {
+        private final long length;
+        private final long lastModified;
+
+        private Stamp(long length, long lastModified) {
+            this.length = length;
+            this.lastModified = lastModified;
+        }
+
+        /**
+         * @param tableFile - routing table file of the layer.
+         * @return - stamp of the current content of the file.
+         */
+        static Stamp of(File tableFile) {
+            return new Stamp(tableFile.length(), tableFile.lastModified());
+        }
+
+        long getLength() {
+            return length;
+        }
+
+        long getLastModified() {
+            return lastModified;
+        }
+
+        boolean matches(long otherLength, long otherLastModified) {
+            return length == otherLength && lastModified == otherLastModified;
+        }
+    }
+
+    /**
+     * @param snapshotFile   - snapshot file to be written. It is replaced in one step, so a reader never sees a partly written file.
+     * @param stamp          - stamp of the routing table file holding the same tables.
+     * @param routingTable   - routing table of the layer.
+     * @param neighbourTable - neighbour table of the layer.
+     * <br>No lock is taken, so the layers are written in parallel. The writes of one layer are serialised by its caller.
+     */
+    static void write(File snapshotFile, Stamp stamp, B4_Node[][] routingTable, B4_Node[] neighbourTable) throws IOException {
+        int slots = routingTable.length * COLUMNS + neighbourTable.length;
+        int heapOffset = HEADER_BYTES + slots * SLOT_BYTES;
+        ByteBuffer table = ByteBuffer.allocate(heapOffset);
+        table.put(MAGIC);
+        table.putShort((short) VERSION);
+        table.putShort((short) COLUMNS);
+        table.putInt(routingTable.length);
+        table.putInt(neighbourTable.length);
+        table.putLong(stamp.length);
+        table.putLong(stamp.lastModified);
+        table.putInt(heapOffset);
+        table.putInt(0);
+        ByteArrayOutputStream heapBytes = new ByteArrayOutputStream();
+        DataOutputStream heap = new DataOutputStream(heapBytes);
+        for (B4_Node[] row : routingTable) {
+            for (int j = 0; j < COLUMNS; j++) {
+                putSlot(table, heap, j < row.length ? row[j] : null);
+            }
+        }
+        for (B4_Node node : neighbourTable) {
+            putSlot(table, heap, node);
+        }
+        heap.flush();
+        table.flip();
+        File tempFile = new File(snapshotFile.getPath() + ".tmp");
+        try (FileChannel channel = FileChannel.open(tempFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (table.hasRemaining()) {
+                channel.write(table);
+            }
+            ByteBuffer heapBuffer = ByteBuffer.wrap(heapBytes.toByteArray());
+            while (heapBuffer.hasRemaining()) {
+                channel.write(heapBuffer);
+            }
+            channel.force(false);
+        }
+        Files.move(tempFile.toPath(), snapshotFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * @param snapshotFile   - snapshot file of the layer.
+     * @param stamp          - stamp of the current routing table file of the layer.
+     * @param routingTable   - routing table to be filled.
+     * @param neighbourTable - neighbour table to be filled.
+     * @return - true if the tables are filled from the snapshot, false if the file is missing, of another version or
+     * dimension, or taken with another routing table file. The tables are not changed when false is returned.
+     */
+    static boolean read(File snapshotFile, Stamp stamp, B4_Node[][] routingTable, B4_Node[] neighbourTable) throws IOException {
+        if (!snapshotFile.exists()) return false;
+        try (FileChannel channel = FileChannel.open(snapshotFile.toPath(), StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_BYTES) return false;
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            for (int i = 0; i < MAGIC.length; i++) {
+                if (buffer.get(i) != MAGIC[i]) return false;
+            }
+            if (buffer.getShort(4) != VERSION || buffer.getShort(6) != COLUMNS) return false;
+            if (buffer.getInt(8) != routingTable.length || buffer.getInt(12) != neighbourTable.length) return false;
+            if (!stamp.matches(buffer.getLong(16), buffer.getLong(24))) return false;
+            int heapOffset = buffer.getInt(32);
+            int slots = routingTable.length * COLUMNS + neighbourTable.length;
+            if (heapOffset != HEADER_BYTES + slots * SLOT_BYTES || heapOffset > buffer.limit()) return false;
+            B4_Node[] nodes = new B4_Node[slots];
+            for (int slot = 0; slot < slots; slot++) {
+                nodes[slot] = getSlot(buffer, HEADER_BYTES + slot * SLOT_BYTES, heapOffset);
+            }
+            for (int i = 0; i < routingTable.length; i++) {
+                for (int j = 0; j < COLUMNS; j++) {
+                    routingTable[i][j] = nodes[i * COLUMNS + j];
+                }
+            }
+            System.arraycopy(nodes, routingTable.length * COLUMNS, neighbourTable, 0, neighbourTable.length);
+            return true;
+        } catch (IndexOutOfBoundsException | BufferUnderflowException e) {
+            throw new IOException("Invalid snapshot file " + snapshotFile.getName(), e);
+        }
+    }
+
+    private static void putSlot(ByteBuffer table, DataOutputStream heap, B4_Node node) throws IOException {
+        if (node == null) {
+            table.put((byte) EMPTY);
+            table.put(new byte[SLOT_BYTES - 1]);
+            return;
+        }
+        B4_NodeTuple tuple = node.getB4node();
+        int position = heap.size();
+        putString(heap, tuple.getNodeID());
+        putString(heap, tuple.getHashID());
+        byte[] encodedKey = tuple.getEncodedKey();
+        heap.writeShort(encodedKey == null ? 0 : encodedKey.length);
+        if (encodedKey != null) heap.write(encodedKey);
+        putString(heap, node.getIpAddress());
+        putString(heap, node.getPortAddress());
+        putString(heap, node.getTransport());
+        table.put((byte) PRESENT);
+        table.put(tuple.getPackedNodeID());
+        table.putFloat(node.getRtt());
+        table.putInt(position);
+        table.putInt(heap.size() - position);
+    }
+
+    /**
+     * @return - node of the slot, null for an empty slot. The packed nodeID is taken from the slot, so it is not packed again.
+     */
+    private static B4_Node getSlot(ByteBuffer buffer, int slotOffset, int heapOffset) {
+        if (buffer.get(slotOffset) != PRESENT) return null;
+        byte[] packedNodeID = new byte[B4_NodeTuple.ID_BYTES];
+        for (int i = 0; i < packedNodeID.length; i++) {
+            packedNodeID[i] = buffer.get(slotOffset + 1 + i);
+        }
+        int fieldOffset = slotOffset + 1 + B4_NodeTuple.ID_BYTES;
+        float rtt = buffer.getFloat(fieldOffset);
+        ByteBuffer heap = buffer.duplicate();
+        heap.position(heapOffset + buffer.getInt(fieldOffset + 4));
+        String nodeID = getString(heap);
+        String hashID = getString(heap);
+        byte[] encodedKey = new byte[heap.getShort() & 0xFFFF];
+        heap.get(encodedKey);
+        String ipAddress = getString(heap);
+        String portAddress = getString(heap);
+        String transport = getString(heap);
+        B4_NodeTuple tuple = new B4_NodeTuple(nodeID, packedNodeID, encodedKey.length == 0 ? null : encodedKey, hashID);
+        return new B4_Node(tuple, ipAddress, portAddress, transport, rtt);
+    }
+
+    private static void putString(DataOutputStream heap, String value) throws IOException {
+        byte[] bytes = (value == null ? "" : value).getBytes(StandardCharsets.UTF_8);
+        heap.writeShort(bytes.length);
+        heap.write(bytes);
+    }
+
+    private static String getString(ByteBuffer heap) {
+        byte[] bytes = new byte[heap.getShort() & 0xFFFF];
+        heap.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,215 @@
+package com.ehelpy.brihaspati4.routingManagerAPI;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.security.KeyFactory;
+import java.security.NoSuchAlgorithmException;
+import java.security.PublicKey;
+import java.security.spec.InvalidKeySpecException;
+import java.security.spec.X509EncodedKeySpec;
+
+/**
+ * This class is used to write and read routing table files in the binary table format (.b4t).
+ * The same tables as the XML files are held, i.e. the self node, routing table nodes, neighbour table nodes and
+ * differential nodes, without repeating element names for every entry.
+ * <br>A file starts with the magic bytes "B4TB" and the format version, followed by the table tag, the self node and
+ * the sequence number (-1 if none). Thereafter each entry is a record type byte, its index and the node, and the file
+ * ends with an end record.
+ * <br>Every string is length prefixed. A nodeID or hashID in hex form is stored packed (two characters per byte), and a
+ * public key is stored as its encoded bytes instead of base64 text.
+ * <br>Readers check the magic bytes, so binary and XML files can be read by the same functions.
+ */
+class B4_TableCodec {
+    static final byte[] MAGIC = {'B', '4', 'T', 'B'};
+    static final int VERSION = 1;
+    static final String EXTENSION = ".b4t";
+    private static final int END = 0;
+    private static final int ROUTING_NODE = 1;
+    private static final int NEIGHBOUR_NODE = 2;
+    private static final int DIFFERENTIAL_NODE = 3;
+    private static final int ID_EMPTY = 0;
+    private static final int ID_HEX = 1;
+    private static final int ID_TEXT = 2;
+
+    /**
+     * @param header - first bytes of a file.
+     * @return - true if the bytes are the magic bytes of the binary table format.
+     */
+    static boolean isBinary(byte[] header) {
+        if (header.length < MAGIC.length) return false;
+        for (int i = 0; i < MAGIC.length; i++) {
+            if (header[i] != MAGIC[i]) return false;
+        }
+        return true;
+    }
+
+    /**
+     * This class writes one binary table file. The entries are written in the order in which they are added.
+     * The file is synced to disk on close, so it can be moved over the previous file once closed.
+     */
+    static final class Writer implements Closeable {
+        private final FileOutputStream fileOut;
+        private final DataOutputStream out;
+
+        /**
+         * @param file     - file to be written.
+         * @param tag      - tag of the table, same as the root element of the XML file.
+         * @param selfNode - node which owns the table.
+         * @param sequence - sequence number of the table, -1 if none.
+         */
+        Writer(File file, String tag, B4_Node selfNode, long sequence) throws IOException {
+            this.fileOut = new FileOutputStream(file);
+            this.out = new DataOutputStream(new BufferedOutputStream(fileOut));
+            out.write(MAGIC);
+            out.writeShort(VERSION);
+            out.writeUTF(tag);
+            writeNode(out, selfNode);
+            out.writeLong(sequence);
+        }
+
+        void routingNode(int row, int column, B4_Node node) throws IOException {
+            out.writeByte(ROUTING_NODE);
+            out.writeShort(row);
+            out.writeByte(column);
+            writeNode(out, node);
+        }
+
+        void neighbourNode(int index, B4_Node node) throws IOException {
+            out.writeByte(NEIGHBOUR_NODE);
+            out.writeShort(index);
+            writeNode(out, node);
+        }
+
+        void differentialNode(int index, B4_Node node) throws IOException {
+            out.writeByte(DIFFERENTIAL_NODE);
+            out.writeInt(index);
+            writeNode(out, node);
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                out.writeByte(END);
+                out.flush();
+                fileOut.getFD().sync();
+            } finally {
+                out.close();
+            }
+        }
+    }
+
+    /**
+     * @param in      - stream positioned after the magic bytes.
+     * @param handler - handler to which the nodes are handed in the order of the file.
+     */
+    static void read(DataInputStream in, B4_TableReader.Handler handler) throws IOException {
+        int version = in.readUnsignedShort();
+        if (version != VERSION) throw new IOException("Unsupported table format version " + version);
+        in.readUTF();
+        handler.selfNode(readNode(in));
+        handler.sequence(in.readLong());
+        while (true) {
+            int record = in.readUnsignedByte();
+            switch (record) {
+                case END:
+                    return;
+                case ROUTING_NODE:
+                    int row = in.readUnsignedShort();
+                    int column = in.readUnsignedByte();
+                    handler.routingNode(row, column, readNode(in));
+                    break;
+                case NEIGHBOUR_NODE:
+                    int index = in.readUnsignedShort();
+                    handler.neighbourNode(index, readNode(in));
+                    break;
+                case DIFFERENTIAL_NODE:
+                    int position = in.readInt();
+                    handler.differentialNode(position, readNode(in));
+                    break;
+                default:
+                    throw new IOException("Invalid record " + record + " in table file");
+            }
+        }
+    }
+
+    static void writeNode(DataOutputStream out, B4_Node node) throws IOException {
+        B4_NodeTuple tuple = node.getB4node();
+        writeID(out, tuple.getNodeID());
+        writeID(out, tuple.getHashID());
+        byte[] encodedKey = tuple.getEncodedKey();
+        if (encodedKey == null) encodedKey = new byte[0];
+        out.writeShort(encodedKey.length);
+        out.write(encodedKey);
+        out.writeUTF(nullToEmpty(node.getIpAddress()));
+        out.writeUTF(nullToEmpty(node.getPortAddress()));
+        out.writeUTF(nullToEmpty(node.getTransport()));
+        out.writeFloat(node.getRtt());
+    }
+
+    static B4_Node readNode(DataInputStream in) throws IOException {
+        String nodeID = readID(in);
+        String hashID = readID(in);
+        byte[] encodedKey = new byte[in.readUnsignedShort()];
+        in.readFully(encodedKey);
+        String ipAddress = in.readUTF();
+        String portAddress = in.readUTF();
+        String transport = in.readUTF();
+        float rtt = in.readFloat();
+        return new B4_Node(new B4_NodeTuple(nodeID, toPublicKey(encodedKey), hashID), ipAddress, portAddress, transport, rtt);
+    }
+
+    /**
+     * An ID is stored packed if it is made of an even number of upper case hex characters, so that it is read back unchanged.
+     */
+    private static void writeID(DataOutputStream out, String id) throws IOException {
+        if (id == null || id.isEmpty()) {
+            out.writeByte(ID_EMPTY);
+        } else if (isPackable(id)) {
+            out.writeByte(ID_HEX);
+            out.writeShort(id.length() / 2);
+            for (int i = 0; i < id.length(); i += 2) {
+                out.writeByte(Character.digit(id.charAt(i), 16) << 4 | Character.digit(id.charAt(i + 1), 16));
+            }
+        } else {
+            out.writeByte(ID_TEXT);
+            out.writeUTF(id);
+        }
+    }
+
+    private static String readID(DataInputStream in) throws IOException {
+        int kind = in.readUnsignedByte();
+        if (kind == ID_EMPTY) return "";
+        if (kind == ID_TEXT) return in.readUTF();
+        if (kind != ID_HEX) throw new IOException("Invalid ID in table file");
+        byte[] packed = new byte[in.readUnsignedShort()];
+        in.readFully(packed);
+        return B4_TableDigest.toHex(packed);
+    }
+
+    private static boolean isPackable(String id) {
+        if ((id.length() & 1) != 0) return false;
+        for (int i = 0; i < id.length(); i++) {
+            char c = id.charAt(i);
+            if (!(c >= '0' && c <= '9') && !(c >= 'A' && c <= 'F')) return false;
+        }
+        return true;
+    }
+
+    private static PublicKey toPublicKey(byte[] encodedKey) throws IOException {
+        if (encodedKey.length == 0) return null;
+        try {
+            return KeyFactory.getInstance("RSA").generatePublic(new X509EncodedKeySpec(encodedKey));
+        } catch (NoSuchAlgorithmException | InvalidKeySpecException e) {
+            throw new IOException("Invalid public key in table file", e);
+        }
+    }
+
+    private static String nullToEmpty(String value) {
+        return value == null ? "" : value;
+    }
+}
@@ -0,0 +1,123 @@
+package com.ehelpy.brihaspati4.routingManagerAPI;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * This class is used to summarise a routing table as a Merkle tree over its rows.
+ * Each row is hashed (SHA-1) over the nodeIDs of its predecessor, successor and middle entry; an empty entry counts as
+ * a nodeID of all zero bytes. The row hashes are the leaves of the tree and the root is the digest of the whole table.
+ * Two tables with the same root hold the same nodes in every row. As the rows of a routing table are relative to the
+ * nodeID of its owner, the row hashes of two nodes are compared only for the rows which cover the same nodeIDs on both
+ * (see differingRows), so only the rows which differ are sent instead of the whole table.
+ */
+class B4_TableDigest {
+    private static final char[] HEX = "0123456789ABCDEF".toCharArray();
+    private final byte[][] rowHashes;
+    private final byte[] root;
+
+    /**
+     * @param routingTable - routing table to be summarised.
+     */
+    B4_TableDigest(B4_Node[][] routingTable) {
+        this.rowHashes = new byte[routingTable.length][];
+        for (int i = 0; i < routingTable.length; i++) {
+            rowHashes[i] = hashRow(routingTable[i]);
+        }
+        this.root = merkleRoot(rowHashes);
+    }
+
+    /**
+     * @return - root of the Merkle tree.
+     */
+    byte[] getRoot() {
+        return root;
+    }
+
+    /**
+     * @return - hash of every row, indexed by row. The array must not be modified.
+     */
+    byte[][] getRowHashes() {
+        return rowHashes;
+    }
+
+    /**
+     * @param remoteRowHashes     - row hashes received from another node.
+     * @param commonPrefixLength - number of leading nibbles which are equal in the nodeIDs of the two nodes.
+     * @return - rows to be sent to the other node, in increasing order.
+     * <br>Row k of a routing table holds the nodes whose first mismatch with the nodeID of its owner is at nibble k, so
+     * only the rows below the common prefix length cover the same nodeIDs on both nodes. These rows are sent if their
+     * hash differs; a row missing on the other node differs. The row at the common prefix length covers the other node
+     * itself and has no counterpart there, so it is always sent as a bucket of its own. The rows above it are not sent.
+     */
+    List<Integer> differingRows(byte[][] remoteRowHashes, int commonPrefixLength) {
+        List<Integer> rows = new ArrayList<>();
+        for (int i = 0; i < rowHashes.length && i < commonPrefixLength; i++) {
+            if (i >= remoteRowHashes.length || !Arrays.equals(rowHashes[i], remoteRowHashes[i])) rows.add(i);
+        }
+        if (commonPrefixLength < rowHashes.length) rows.add(commonPrefixLength);
+        return rows;
+    }
+
+    /**
+     * @param row - predecessor, successor and middle entry of a row.
+     * @return - SHA-1 over the packed nodeIDs of the entries.
+     */
+    static byte[] hashRow(B4_Node[] row) {
+        MessageDigest digest = sha1();
+        byte[] empty = new byte[B4_NodeTuple.ID_BYTES];
+        for (B4_Node node : row) {
+            if (node == null || node.getB4node().getNodeID().isEmpty()) digest.update(empty);
+            else digest.update(node.getB4node().getPackedNodeID());
+        }
+        return digest.digest();
+    }
+
+    /**
+     * @param leaves - row hashes.
+     * @return - root of the binary hash tree over the leaves. A node without sibling is carried to the next level unchanged.
+     */
+    static byte[] merkleRoot(byte[][] leaves) {
+        if (leaves.length == 0) return sha1().digest();
+        byte[][] level = leaves;
+        while (level.length > 1) {
+            byte[][] parents = new byte[(level.length + 1) / 2][];
+            for (int i = 0; i < parents.length; i++) {
+                if (2 * i + 1 == level.length) {
+                    parents[i] = level[2 * i];
+                } else {
+                    MessageDigest digest = sha1();
+                    digest.update(level[2 * i]);
+                    digest.update(level[2 * i + 1]);
+                    parents[i] = digest.digest();
+                }
+            }
+            level = parents;
+        }
+        return level[0];
+    }
+
+    /**
+     * @param hash - hash in binary form.
+     * @return - hash in upper case hex form, same as the nodeIDs.
+     */
+    static String toHex(byte[] hash) {
+        char[] hex = new char[hash.length * 2];
+        for (int i = 0; i < hash.length; i++) {
+            hex[2 * i] = HEX[(hash[i] >> 4) & 0xF];
+            hex[2 * i + 1] = HEX[hash[i] & 0xF];
+        }
+        return new String(hex);
+    }
+
+    private static MessageDigest sha1() {
+        try {
+            return MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-1 is not available", e);
+        }
+    }
+}
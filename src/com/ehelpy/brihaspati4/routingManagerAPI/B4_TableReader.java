@@ -0,0 +1,210 @@
+package com.ehelpy.brihaspati4.routingManagerAPI;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * This class is used to read a routing table file one node at a time.
+ * The file is read as a stream of XML events and each node is handed to the handler as soon as its element is complete,
+ * so no part of the table needs to be held in memory by the reader.
+ * The self node is taken from the attributes of the root element and is handed over before any other node.
+ * The files written by routingTableToXML as well as the merger neighbour tables and differential routing tables can be read.
+ * A file in the binary table format (see B4_TableCodec) is recognised by its magic bytes and handed to the same handler.
+ */
+class B4_TableReader {
+    private static final XMLInputFactory factory = newFactory();
+    private final Utility utility = new Utility();
+
+    /**
+     * This interface receives the nodes of the file in the order in which they appear in the file.
+     */
+    interface Handler {
+        /**
+         * @param selfNode - node which sent the table, taken from the SELF_ attributes of the root element.
+         */
+        default void selfNode(B4_Node selfNode) {
+        }
+
+        /**
+         * @param row    - row index of the node, -1 if it is not present.
+         * @param column - column index of the node, -1 if it is not present.
+         * @param node   - routing table node.
+         */
+        default void routingNode(int row, int column, B4_Node node) {
+        }
+
+        /**
+         * @param index - index of the node, -1 if it is not present.
+         * @param node  - neighbour table node along with its RTT.
+         */
+        default void neighbourNode(int index, B4_Node node) {
+        }
+
+        /**
+         * @param index - position of the node in the differential routing table.
+         * @param node  - differential routing table node along with its RTT.
+         */
+        default void differentialNode(int index, B4_Node node) {
+        }
+
+        /**
+         * @param sequence - sequence number of the table, -1 if it has none. It is handed over after the self node.
+         */
+        default void sequence(long sequence) {
+        }
+    }
+
+    /**
+     * @param tableFile - path of the routing table file.
+     * @param handler   - handler to which the nodes are handed.
+     */
+    void read(String tableFile, Handler handler) throws IOException, XMLStreamException {
+        try (InputStream in = new BufferedInputStream(new FileInputStream(tableFile))) {
+            byte[] header = new byte[B4_TableCodec.MAGIC.length];
+            in.mark(header.length);
+            int length = in.read(header);
+            if (length == header.length && B4_TableCodec.isBinary(header)) {
+                B4_TableCodec.read(new DataInputStream(in), handler);
+                return;
+            }
+            in.reset();
+            XMLStreamReader reader = factory.createXMLStreamReader(in);
+            try {
+                boolean isRoot = true;
+                while (reader.hasNext()) {
+                    if (reader.next() != XMLStreamConstants.START_ELEMENT) continue;
+                    if (isRoot) {
+                        isRoot = false;
+                        handler.selfNode(readSelfNode(reader));
+                        String sequence = attribute(reader, "SEQUENCE");
+                        handler.sequence(sequence.isEmpty() ? -1 : Long.parseLong(sequence));
+                        continue;
+                    }
+                    String element = reader.getLocalName();
+                    if ("B4_Node".equals(element)) {
+                        int[] index = parseIndex(reader.getAttributeValue(null, "INDEX"));
+                        handler.routingNode(index[0], index[1], readNode(reader, element, false));
+                    } else if ("NEIGHBOUR".equals(element)) {
+                        int[] index = parseIndex(reader.getAttributeValue(null, "INDEX"));
+                        handler.neighbourNode(index[0], readNode(reader, element, true));
+                    } else if ("DIFFNODES".equals(element)) {
+                        int[] index = parseIndex(reader.getAttributeValue(null, "INDEX"));
+                        handler.differentialNode(index[0], readNode(reader, element, true));
+                    }
+                }
+            } finally {
+                reader.close();
+            }
+        }
+    }
+
+    /**
+     * @param reader - reader positioned at the root element.
+     * @return - self node built from the SELF_ attributes. A missing attribute is taken as empty.
+     */
+    private B4_Node readSelfNode(XMLStreamReader reader) {
+        String selfNodeID = attribute(reader, "SELF_NODE_ID");
+        String selfNodePub = attribute(reader, "SELF_PUBLIC_KEY");
+        String selfHashID = attribute(reader, "SELF_HASHID");
+        String selfIPAddress = attribute(reader, "SELF_IP_ADDRESS");
+        String selfPortAddress = attribute(reader, "SELF_PORT_ADDRESS");
+        String selfTransport = attribute(reader, "SELF_TRANSPORT");
+        return new B4_Node(new B4_NodeTuple(selfNodeID, utility.strToPub(selfNodePub), selfHashID), selfIPAddress, selfPortAddress, selfTransport);
+    }
+
+    /**
+     * @param reader  - reader positioned at the start of the node element.
+     * @param element - name of the node element.
+     * @param withRTT - true if the NODERTT of the node is to be read.
+     * @return - node built from the sub-elements. The reader is left at the end of the node element.
+     */
+    private B4_Node readNode(XMLStreamReader reader, String element, boolean withRTT) throws XMLStreamException {
+        String nodeID = "";
+        String nodePub = "";
+        String hashID = "";
+        String nodeIP = "";
+        String nodePort = "";
+        String nodeTransport = "";
+        String nodeRTT = "-1";
+        while (reader.hasNext()) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.END_ELEMENT && element.equals(reader.getLocalName())) break;
+            if (event != XMLStreamConstants.START_ELEMENT) continue;
+            String name = reader.getLocalName();
+            String value = reader.getElementText();
+            switch (name) {
+                case "NODEID":
+                    nodeID = value;
+                    break;
+                case "PUBLICKEY":
+                    nodePub = value;
+                    break;
+                case "HASHID":
+                    hashID = value;
+                    break;
+                case "NODEIP":
+                    nodeIP = value;
+                    break;
+                case "NODEPORT":
+                    nodePort = value;
+                    break;
+                case "NODETRANSPORT":
+                    nodeTransport = value;
+                    break;
+                case "NODERTT":
+                    nodeRTT = value;
+                    break;
+                default:
+                    break;
+            }
+        }
+        B4_NodeTuple tuple = new B4_NodeTuple(nodeID, utility.strToPub(nodePub), hashID);
+        if (withRTT) return new B4_Node(tuple, nodeIP, nodePort, nodeTransport, Float.parseFloat(nodeRTT));
+        return new B4_Node(tuple, nodeIP, nodePort, nodeTransport);
+    }
+
+    /**
+     * @param index - INDEX attribute of the form [i] or [i][j].
+     * @return - the two indices, -1 for an index which is not present.
+     * <br>The attribute is scanned once without a regular expression.
+     */
+    static int[] parseIndex(String index) {
+        int[] indices = {-1, -1};
+        if (index == null) return indices;
+        int n = 0;
+        int value = -1;
+        for (int i = 0; i < index.length() && n < indices.length; i++) {
+            char c = index.charAt(i);
+            if (c == '[') {
+                value = 0;
+            } else if (c == ']') {
+                indices[n++] = value;
+                value = -1;
+            } else if (c >= '0' && c <= '9' && value != -1) {
+                value = value * 10 + (c - '0');
+            } else if (c != ' ') {
+                throw new NumberFormatException("Invalid INDEX " + index);
+            }
+        }
+        return indices;
+    }
+
+    private static String attribute(XMLStreamReader reader, String name) {
+        String value = reader.getAttributeValue(null, name);
+        return value == null ? "" : value;
+    }
+
+    private static XMLInputFactory newFactory() {
+        XMLInputFactory inputFactory = XMLInputFactory.newInstance();
+        inputFactory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        inputFactory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        return inputFactory;
+    }
+}
@@ -74,6 +74,18 @@ class ConfigData {
         return length;
     }
 
+    private int servicesInt(String key, int defaultValue) {
+        int value = defaultValue;
+        try {
+            properties.load(reader);
+            String property = properties.getProperty(key);
+            if (property != null) value = Integer.parseInt(property.trim());
+        } catch (IOException | NumberFormatException e) {
+            log.error(key + " parameter not valid in config file, default value is used\n", e);
+        }
+        return value;
+    }
+
     private String servicesString(String key) {
         String name = null;
         try {
@@ -126,6 +138,18 @@ class ConfigData {
         return access;
     }
 
+    private boolean serviceAccess(String serviceName, boolean defaultValue) {
+        boolean access = defaultValue;
+        try {
+            properties.load(reader);
+            String value = properties.getProperty(serviceName);
+            if (value != null) access = value.trim().contentEquals("yes");
+        } catch (IOException e) {
+            log.error("Service Not found in Config file\n", e);
+        }
+        return access;
+    }
+
     long getSleepTime() {
         return servicesLong("Sleep_time");
     }
@@ -225,6 +249,47 @@ class ConfigData {
         return purgeCount;
     }
 
+    int getNextHopCacheSize() {
+        return servicesInt("NextHopCache_size", 4096);
+    }
+
+    int getParallelMergeThreshold() {
+        return servicesInt("ParallelMerge_threshold", 1024);
+    }
+
+    boolean isProximityRouting() {
+        return serviceAccess("ProximityRouting", false);
+    }
+
+    int getPeerIndexSize() {
+        return servicesInt("PeerIndex_size", 1024);
+    }
+
+    int getDiffWindowMillis() {
+        return servicesInt("DiffWindow_ms", 5000);
+    }
+
+    int getDiffWindowSize() {
+        return servicesInt("DiffWindow_size", 64);
+    }
+
+    boolean isBinaryTableFormat() {
+        String format = getValue("TableFormat");
+        return format != null && format.trim().equalsIgnoreCase("binary");
+    }
+
+    int getPersistIntervalMillis() {
+        return servicesInt("PersistInterval_ms", 1000);
+    }
+
+    int getLogCompactionSize() {
+        return servicesInt("LogCompaction_size", 1024);
+    }
+
+    boolean isTableSnapshot() {
+        return serviceAccess("TableSnapshot", true);
+    }
+
     void generateDefaultConfigFile() {
         properties = new Properties();
         properties.setProperty("BootstrapND", "ED38EE69F98BDF529CC05E34A19D04647A487B71");
@@ -242,6 +307,16 @@ class ConfigData {
         properties.setProperty("NT_length", "16");
         properties.setProperty("Increment_time", "30000");
         properties.setProperty("Sleep_time", "30000");
+        properties.setProperty("NextHopCache_size", "4096");
+        properties.setProperty("PeerIndex_size", "1024");
+        properties.setProperty("ProximityRouting", "no");
+        properties.setProperty("ParallelMerge_threshold", "1024");
+        properties.setProperty("DiffWindow_ms", "5000");
+        properties.setProperty("DiffWindow_size", "64");
+        properties.setProperty("TableFormat", "xml");
+        properties.setProperty("TableSnapshot", "yes");
+        properties.setProperty("LogCompaction_size", "1024");
+        properties.setProperty("PersistInterval_ms", "1000");
         properties.setProperty("BaseRoutingTable", "yes");
         properties.setProperty("StorageRoutingTable", "yes");
         properties.setProperty("Email", "umesh@iitk.ac.in");
@@ -7,6 +7,7 @@ import org.xml.sax.SAXException;
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.XMLStreamException;
 import javax.xml.transform.Transformer;
 import javax.xml.transform.TransformerException;
 import javax.xml.transform.TransformerFactory;
@@ -16,11 +17,26 @@ import java.io.*;
 import java.net.InetAddress;
 import java.net.NetworkInterface;
 import java.net.SocketException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.security.KeyStore;
 import java.security.PublicKey;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -43,7 +59,6 @@ public class RoutingManager {
     private static RoutingManagerBuffer routingManagerBuffer;
     private static ConfigData config;
     private final ArrayList<B4_RoutingTable> routingTables;
-    private final ArrayList<B4_Node> differentialRTNodes;
     private final String layerFile;
     private final int rt_dimension;
     private final int nt_dimension;
@@ -52,9 +67,18 @@ public class RoutingManager {
     private final DateTimeCheck dateTimeCheck;
     private final NodeCryptography nodeCryptography;
     private final B4_NodeGeneration b4_nodeGeneration;
-    private ArrayList<B4_Node> receivedDifferentialNodes;
-    private ArrayList<B4_Node> receivedDiffNTNodes;
-    private B4_Node diffSelfMergerNode;
+    private final B4_NextHopCache nextHopCache;
+    private final boolean proximityRouting;
+    private final int parallelMergeThreshold;
+    private final B4_DiffEmitter diffEmitter;
+    private final B4_ChangeNotifier changeNotifier;
+    private final boolean binaryTables;
+    private final boolean tableSnapshots;
+    private final int logCompactionSize;
+    private final ConcurrentHashMap<Integer, B4_MutationLog> mutationLogs;
+    private final B4_PersistScheduler persistScheduler;
+    private final ConcurrentHashMap<String, Long> receivedDiffSequences;
+    private final AtomicLong responseSequence;
     private Utility utility;
     private B4_Node localNode;
     private String selfIPAddress;
@@ -75,7 +99,18 @@ public class RoutingManager {
     private RoutingManager() {
         config = ConfigData.getInstance();
         routingTables = new ArrayList<>();
-        differentialRTNodes = new ArrayList<>();
+        nextHopCache = new B4_NextHopCache(config.getNextHopCacheSize());
+        proximityRouting = config.isProximityRouting();
+        parallelMergeThreshold = config.getParallelMergeThreshold();
+        diffEmitter = new B4_DiffEmitter(config.getDiffWindowMillis(), config.getDiffWindowSize(), this::emitDifferentialTable);
+        receivedDiffSequences = new ConcurrentHashMap<>();
+        responseSequence = new AtomicLong();
+        changeNotifier = new B4_ChangeNotifier();
+        binaryTables = config.isBinaryTableFormat();
+        tableSnapshots = config.isTableSnapshot();
+        logCompactionSize = config.getLogCompactionSize();
+        mutationLogs = new ConcurrentHashMap<>();
+        persistScheduler = new B4_PersistScheduler(config.getPersistIntervalMillis(), this::writeLayer);
         dateTimeCheck = new DateTimeCheck();
         routingManagerBuffer = RoutingManagerBuffer.getInstance();
         nodeCryptography = NodeCryptography.getInstance();
@@ -122,6 +157,10 @@ public class RoutingManager {
         Runtime runtime = Runtime.getRuntime();
         runtime.addShutdownHook(new Thread(() -> {
             log.info("System is going to shutdown");
+            diffEmitter.flushAll();
+            log.info("Saving routing tables");
+            persistScheduler.flushAll();
+            checkpointLayers();
             log.info("Backing up system configuration ");
             dateTimeCheck.setLastLogoutTime();
         }));
@@ -143,15 +182,18 @@ public class RoutingManager {
     /**
      * @param rtTag          Tag name to be added to the XML file.
      * @param rtFileName     Name of the routing table which we desired to give for later identification.
-     * @param routingTable   Object of Routing Table.
-     * @param neighbourTable Object of Neighbour Table.
+     * @param layerID        Layer whose routing table and neighbour table are to be initialised.
      *                       <br>All the initialisation w.r.t routing Manager will be performed here.
      *                       <br>This function is called by the constructor for initialisation of routing manager.
      *                       <br>Initialisation includes creating routingTable and neighbour table,creating a routing table file for future references etc.
      */
-    private void init(String rtTag, String rtFileName, B4_Node[][] routingTable, B4_Node[] neighbourTable) {
+    private void init(String rtTag, String rtFileName, int layerID) {
         boolean rtExists;
-        File rtFile = new File(rtFileName + ".xml");
+        int replayed = -1;
+        B4_RoutingTable layer = routingTables.get(layerID);
+        B4_Node[][] routingTable = new B4_Node[rt_dimension][3];
+        B4_Node[] neighbourTable = new B4_Node[nt_dimension];
+        File rtFile = layerTableFile(rtFileName);
         rtExists = rtFile.exists();
         if (!rtExists) {
             /* Routing Table */
@@ -161,15 +203,202 @@ public class RoutingManager {
                 }
             }
             B4_Node bootStrapNode = config.getBootStrapNode();
-            mergerRT(bootStrapNode, routingTable);
+            mergerRT(bootStrapNode, routingTable, new ArrayList<>());
             /* Neighbour Table */
             for (int i = 0; i < nt_dimension; i++) {
                 neighbourTable[i] = new B4_Node(new B4_NodeTuple("", null, ""), "", "", "", -1);
             }
             routingTableToXML(rtTag, rtFileName, routingTable, neighbourTable);
         } else {
-            fetchFromXML(rtFileName, routingTable, neighbourTable);
-            log.info(rtFileName + " RT loaded from existing file");
+            B4_SnapshotFile.Stamp stamp = B4_SnapshotFile.Stamp.of(rtFile);
+            if (readSnapshot(rtFileName, stamp, routingTable, neighbourTable)) {
+                log.info(rtFileName + " RT loaded from snapshot");
+            } else {
+                fetchFromXML(rtFileName, routingTable, neighbourTable);
+                log.info(rtFileName + " RT loaded from existing file");
+            }
+            replayed = replayLog(rtFileName, stamp, routingTable, neighbourTable);
+            if (replayed > 0) log.info(rtFileName + " " + replayed + " changes replayed from log");
+        }
+        layer.lockWriter();
+        try {
+            layer.publish(routingTable, neighbourTable, localNode.getB4node().getPackedNodeID());
+        } finally {
+            layer.unlockWriter();
+        }
+        indexNodes(layer, routingTable);
+        indexNodes(layer, neighbourTable);
+        B4_MutationLog mutationLog = logCompactionSize > 0 ? new B4_MutationLog(new File(rtFileName + B4_MutationLog.EXTENSION)) : null;
+        closeLog(mutationLog == null ? mutationLogs.remove(layerID) : mutationLogs.put(layerID, mutationLog));
+        if (replayed > 0) compactLayer(rtTag, rtFileName, layer.getSnapshot(), mutationLog);
+        else startLog(rtFileName, layer.getSnapshot(), mutationLog);
+    }
+
+    /**
+     * @param layer Layer whose peer index is to be updated.
+     * @param nodes Nodes to be added to the peer index of the layer. Empty entries are skipped.
+     */
+    private void indexNodes(B4_RoutingTable layer, B4_Node[][] nodes) {
+        for (B4_Node[] row : nodes) {
+            indexNodes(layer, row);
+        }
+    }
+
+    /**
+     * @param layer Layer whose peer index is to be updated.
+     * @param nodes Nodes to be added to the peer index of the layer. Empty entries are skipped.
+     */
+    private void indexNodes(B4_RoutingTable layer, B4_Node[] nodes) {
+        B4_PeerIndex peerIndex = layer.getPeerIndex();
+        for (B4_Node node : nodes) {
+            peerIndex.add(node);
+        }
+    }
+
+    /**
+     * @param layerID Layer whose tables are changed.
+     *                <br>The layer is marked dirty and saved in the background by writeLayer, at most once every
+     *                PersistInterval_ms milliseconds, so the caller does not wait for the disk.
+     */
+    private void saveLayer(int layerID) {
+        persistScheduler.markDirty(layerID);
+    }
+
+    /**
+     * @param layerID Layer whose tables are to be saved.
+     *                <br>The changes since the last save are appended to the log of the layer. Once the log holds
+     *                LogCompaction_size records, or if it cannot be written, the layer is compacted instead.
+     *                <br>The current snapshot of the layer is taken under the lock of the log, so an older snapshot is never
+     *                saved after a newer one.
+     */
+    private void writeLayer(int layerID) {
+        B4_Layer b4_layer = new B4_Layer();
+        String layerName = b4_layer.getLayerName(layerID);
+        if (layerName == null) return;
+        B4_RoutingTable layer = routingTables.get(layerID);
+        String rtFileName = layerID + "_" + layerName + "_" + localNode.getB4node().getNodeID();
+        B4_MutationLog mutationLog = mutationLogs.get(layerID);
+        if (mutationLog == null) {
+            compactLayer(layerName, rtFileName, layer.getSnapshot(), null);
+            return;
+        }
+        synchronized (mutationLog) {
+            B4_RoutingTable.Snapshot snapshot = layer.getSnapshot();
+            try {
+                if (mutationLog.append(snapshot) < logCompactionSize) return;
+            } catch (IOException e) {
+                log.error("Exception Occurred", e);
+            }
+            compactLayer(layerName, rtFileName, snapshot, mutationLog);
+        }
+    }
+
+    /**
+     * @param layerName Name of the layer.
+     * @param layerID   Layer to be checkpointed.
+     *                  <br>Compacts the layer if its log holds any change, so that the routing table file of the layer is current.
+     */
+    private void checkpointLayer(String layerName, int layerID) {
+        B4_MutationLog mutationLog = mutationLogs.get(layerID);
+        if (mutationLog == null) return;
+        synchronized (mutationLog) {
+            B4_RoutingTable.Snapshot snapshot = routingTables.get(layerID).getSnapshot();
+            boolean isChanged;
+            try {
+                isChanged = mutationLog.append(snapshot) > 0;
+            } catch (IOException e) {
+                log.error("Exception Occurred", e);
+                isChanged = true;
+            }
+            if (isChanged) compactLayer(layerName, layerID + "_" + layerName + "_" + localNode.getB4node().getNodeID(), snapshot, mutationLog);
+        }
+    }
+
+    /**
+     * Checkpoints every loaded layer, e.g. on shutdown.
+     */
+    private void checkpointLayers() {
+        B4_Layer b4_layer = new B4_Layer();
+        for (Integer layerID : mutationLogs.keySet()) {
+            String layerName = b4_layer.getLayerName(layerID);
+            if (layerName != null) checkpointLayer(layerName, layerID);
+        }
+    }
+
+    /**
+     * @param rtTag       Tag of the routing table file.
+     * @param rtFileName  Name of the routing table file of the layer without extension.
+     * @param snapshot    Snapshot of the layer to be written.
+     * @param mutationLog Log of the layer, null if changes are not logged.
+     *                    <br>Writes the whole routing table file of the layer and starts the log again from it.
+     */
+    private void compactLayer(String rtTag, String rtFileName, B4_RoutingTable.Snapshot snapshot, B4_MutationLog mutationLog) {
+        routingTableToXML(rtTag, rtFileName, snapshot.getRoutingTable(), snapshot.getNeighbourTable());
+        startLog(rtFileName, snapshot, mutationLog);
+    }
+
+    /**
+     * @param rtFileName  Name of the routing table file of the layer without extension.
+     * @param snapshot    Snapshot of the layer held by the routing table file.
+     * @param mutationLog Log of the layer, null if changes are not logged.
+     *                    <br>Writes the snapshot file of the layer and starts the log, both stamped with the routing table
+     *                    file, so they are used on restart only while the routing table file is unchanged.
+     */
+    private void startLog(String rtFileName, B4_RoutingTable.Snapshot snapshot, B4_MutationLog mutationLog) {
+        File rtFile = layerTableFile(rtFileName);
+        if (!rtFile.exists()) return;
+        try {
+            B4_SnapshotFile.Stamp stamp = B4_SnapshotFile.Stamp.of(rtFile);
+            if (tableSnapshots)
+                B4_SnapshotFile.write(new File(rtFileName + B4_SnapshotFile.EXTENSION), stamp, snapshot.getRoutingTable(), snapshot.getNeighbourTable());
+            if (mutationLog != null) mutationLog.reset(stamp, snapshot);
+        } catch (IOException e) {
+            log.error("Exception Occurred", e);
+        }
+    }
+
+    /**
+     * @param mutationLog Log to be closed, may be null.
+     */
+    private void closeLog(B4_MutationLog mutationLog) {
+        if (mutationLog == null) return;
+        try {
+            mutationLog.close();
+        } catch (IOException e) {
+            log.error("Exception Occurred", e);
+        }
+    }
+
+    /**
+     * @param rtFileName     Name of the routing table file of the layer without extension.
+     * @param stamp          Stamp of the routing table file of the layer.
+     * @param routingTable   Object of Routing Table, changed in place.
+     * @param neighbourTable Object of Neighbour Table, changed in place.
+     * @return Number of changes replayed from the log of the layer, -1 if there is no log for the routing table file.
+     */
+    private int replayLog(String rtFileName, B4_SnapshotFile.Stamp stamp, B4_Node[][] routingTable, B4_Node[] neighbourTable) {
+        try {
+            return B4_MutationLog.replay(new File(rtFileName + B4_MutationLog.EXTENSION), stamp, routingTable, neighbourTable);
+        } catch (IOException | RuntimeException e) {
+            log.error("Exception Occurred", e);
+            return -1;
+        }
+    }
+
+    /**
+     * @param rtFileName     Name of the routing table file of the layer without extension.
+     * @param stamp          Stamp of the routing table file of the layer.
+     * @param routingTable   Object of Routing Table.
+     * @param neighbourTable Object of Neighbour Table.
+     * @return true if the tables are filled from the snapshot file of the layer, false if the routing table file is to be read.
+     */
+    private boolean readSnapshot(String rtFileName, B4_SnapshotFile.Stamp stamp, B4_Node[][] routingTable, B4_Node[] neighbourTable) {
+        if (!tableSnapshots) return false;
+        try {
+            return B4_SnapshotFile.read(new File(rtFileName + B4_SnapshotFile.EXTENSION), stamp, routingTable, neighbourTable);
+        } catch (IOException e) {
+            log.error("Exception Occurred", e);
+            return false;
         }
     }
 
@@ -194,23 +423,55 @@ public class RoutingManager {
      */
 
     public void mergeRoutingTable(File fileName, int layerID) {
-        B4_Node[][] routingTableLayer = routingTables.get(layerID).getRoutingTable();
-        B4_Node selfNodeOfMergerTable = getSelfNodeOfMergerTable(fileName.getAbsolutePath());
-        B4_Node[][] mergerRoutingTable = getMergerRoutingTable(fileName.getAbsolutePath());
-        mergerRT(selfNodeOfMergerTable, routingTableLayer);
-        for (int i = 0; i < rt_dimension; i++) {
-            for (int j = 0; j < 3; j++) {
-                mergerRT(mergerRoutingTable[i][j], routingTableLayer);
+        mergeRoutingTables(Collections.singletonList(fileName), layerID);
+    }
+
+    /**
+     * @param files   Routing table files fetched from the input buffer, merged in the given order.
+     * @param layerID Specify the layer Id of the routing table which needs to be merged.
+     *                <br>Gives the same routing table as calling mergeRoutingTable for the files one by one.
+     *                <br>The layer is published once, the layer is saved once and one
+     *                differential routing table holding the nodes added from all the files is added to the output buffer.
+     *                <br>Each file is streamed and the nodes read are merged in batches of ParallelMerge_threshold nodes
+     *                (config file), so the received routing tables are never held in memory as a whole, and a batch spanning
+     *                several files is merged row by row in parallel by mergeNodes.
+     */
+    public void mergeRoutingTables(List<File> files, int layerID) {
+        mergeRoutingTableFiles(files, layerID);
+    }
+
+    /**
+     * @param files   Routing table files fetched from the input buffer, merged in the given order.
+     * @param layerID Specify the layer Id of the routing table which needs to be merged.
+     * @return Self node and neighbour table of every file which is read completely, in the order of the files. A file which
+     * could not be read is left out, its nodes read before the failure are still merged.
+     * <br>Same as mergeRoutingTables. The returned tables are used for generating the RTT merger tables of the files
+     * without reading them again, however many files are merged in one call.
+     */
+    private List<B4_MergeRoutingTable> mergeRoutingTableFiles(List<File> files, int layerID) {
+        List<B4_MergeRoutingTable> mergerTables = new ArrayList<>();
+        if (files.isEmpty()) return mergerTables;
+        B4_RoutingTable layer = routingTables.get(layerID);
+        ArrayList<B4_Node> differentialNodes = new ArrayList<>();
+        layer.lockWriter();
+        try {
+            B4_Node[][] routingTableLayer = layer.copyRoutingTable();
+            ArrayList<B4_Node> batch = new ArrayList<>();
+            boolean isChanged = false;
+            for (File fileName : files) {
+                isChanged |= streamMergerTable(fileName, layer, batch, routingTableLayer, differentialNodes, mergerTables);
             }
+            isChanged |= mergeNodes(batch, routingTableLayer, differentialNodes);
+            if (isChanged) layer.publish(routingTableLayer, layer.getNeighbourTable(), localNode.getB4node().getPackedNodeID());
+        } finally {
+            layer.unlockWriter();
         }
+        diffEmitter.add(layerID, differentialNodes);
         B4_Layer b4_layer = new B4_Layer();
         String layerName = b4_layer.getLayerName(layerID);
-        routingTableToXML(layerName, layerID + "_" + layerName + "_" + localNode.getB4node().getNodeID(), routingTables.get(layerID).getRoutingTable(), routingTables.get(layerID).getNeighbourTable());
+        saveLayer(layerID);
         log.info(layerName + " Merging completed Successfully");
-        String selfNodeID = getNodeID();
-        File file = createDifferentialTable("DifferentialRoutingTableNodes", "DiffR_" + layerID + "_RoutingTable_" + selfNodeID);
-        addFileToOutputBuffer(file);
-        log.info(layerName + " Differential Routing Table File added to the Output Buffer");
+        return mergerTables;
     }
 
     /**
@@ -219,9 +480,9 @@ public class RoutingManager {
      *                 Function is used to merge neighbour table received file from other nodes with the neighbour table of current node.
      */
     public void mergeNeighbourTable(File fileName, int layerID) {
-        B4_Node[] neighbourTable = routingTables.get(layerID).getNeighbourTable();
+        B4_RoutingTable layer = routingTables.get(layerID);
         boolean rttFileExists;
-        int index1 = 0;
+        int index1;
         B4_Node[] mergerNeighbourTable = new B4_Node[nt_dimension];
         B4_Node selfMergerNode = null;
         File rttFile = new File(fileName.getName());
@@ -271,44 +532,28 @@ public class RoutingManager {
             } catch (ParserConfigurationException | SAXException | IOException e) {
                 log.error("Exception Occurred", e);
             }
-            for (int i = 0; i < nt_dimension; i++) {
-                assert selfMergerNode != null;
-                if (selfMergerNode.getRtt() == -1) break;
-                assert neighbourTable != null;
-                if (neighbourTable[i].getRtt() == -1) {
-                    neighbourTable[i] = selfMergerNode;
-                    break;
-                } else if (neighbourTable[i].getRtt() <= selfMergerNode.getRtt()) {
-                } else {
-                    for (int j = nt_dimension - 1; j >= i + 1; j--) {
-                        neighbourTable[j] = neighbourTable[j - 1];
-                    }
-                    neighbourTable[i] = selfMergerNode;
-                }
-            }
-            for (int i = 0; i <= index1; i++) {
-                for (int j = 0; j < nt_dimension; j++) {
-                    if (mergerNeighbourTable[i].getRtt() == -1) break;
-                    assert neighbourTable != null;
-                    if (neighbourTable[j].getRtt() == -1) {
-                        neighbourTable[j] = mergerNeighbourTable[i];
-                        break;
-                    } else if (mergerNeighbourTable[i].getRtt() >= neighbourTable[j].getRtt()) {
-                    } else {
-                        for (int k = nt_dimension - 1; k >= j + 1; k--) {
-                            neighbourTable[k] = neighbourTable[k - 1];
-                        }
-                        neighbourTable[j] = mergerNeighbourTable[i];
-                        break;
-                    }
+            byte[] localNodeIdP = localNode.getB4node().getPackedNodeID();
+            ArrayList<B4_Node> mergerNodes = new ArrayList<>();
+            mergerNodes.add(selfMergerNode);
+            mergerNodes.addAll(Arrays.asList(mergerNeighbourTable));
+            mergerNodes.removeIf(node -> node == null || Arrays.equals(node.getB4node().getPackedNodeID(), localNodeIdP));
+            layer.lockWriter();
+            try {
+                B4_NeighbourTopK neighbours = new B4_NeighbourTopK(nt_dimension, layer.getNeighbourTable());
+                boolean isChanged = false;
+                for (B4_Node mergerNode : mergerNodes) {
+                    isChanged |= neighbours.offer(mergerNode);
                 }
+                if (isChanged) layer.publish(layer.getRoutingTable(), neighbours.toArray(), localNodeIdP);
+            } finally {
+                layer.unlockWriter();
             }
-            for (int i = 0; i < nt_dimension; i++) {
-                assert neighbourTable != null;
+            for (B4_Node mergerNode : mergerNodes) {
+                if (mergerNode.getRtt() != -1) layer.getPeerIndex().add(mergerNode);
             }
             B4_Layer b4_layer = new B4_Layer();
             String layerName = b4_layer.getLayerName(layerID);
-            routingTableToXML(layerName, layerID + "_" + layerName + "_" + localNode.getB4node().getNodeID(), routingTables.get(layerID).getRoutingTable(), routingTables.get(layerID).getNeighbourTable());
+            saveLayer(layerID);
             log.info(layerName + " Merged successfully");
         }
     }
@@ -338,40 +583,312 @@ public class RoutingManager {
      * <br>If true return middleNodeId.
      */
     public B4_Node findNextHop(String hashID, int layerID) {
-        B4_Node[][] routingTable = routingTables.get(layerID).getRoutingTable();
-        String localNodeID = localNode.getB4node().getNodeID();
-        //System.out.println("HashID  : " + hashID + " " + "  LocalID  : " + localNodeID);
-        char[] hashIdC = hashID.toCharArray();
-        char[] localNodeIdC = localNodeID.toCharArray();
-        if (hashID.equals(localNodeID)) {
+        return lookup(B4_NodeTuple.packNodeID(hashID), layerID);
+    }
+
+    /**
+     * @param key     key in binary form (e.g. a digest) received as a query to find the next hop.
+     * @param layerID layer id on which the operation is to be performed.
+     * @return null if next hop is selfNode else return B4_Node object.
+     * <br>Same as findNextHop(String, int) for the hex form of the key, without converting the key to hex.
+     * <br>Only the first 20 bytes of the key are used, a shorter key is padded with zero bytes.
+     */
+    public B4_Node findNextHop(byte[] key, int layerID) {
+        return lookup(B4_NodeTuple.packKey(key), layerID);
+    }
+
+    /**
+     * @param key     key in binary form, read from its position to its limit. The position of the buffer is not changed.
+     * @param layerID layer id on which the operation is to be performed.
+     * @return null if next hop is selfNode else return B4_Node object.
+     * <br>Same as findNextHop(byte[], int).
+     */
+    public B4_Node findNextHop(ByteBuffer key, int layerID) {
+        return lookup(B4_NodeTuple.packKey(key), layerID);
+    }
+
+    /**
+     * @param hashIdP hash ID in packed form.
+     * @param layerID layer id on which the operation is to be performed.
+     * @return null if next hop is selfNode else return B4_Node object.
+     * <br>Common entry of the findNextHop variants, the result is taken from the next hop cache when it is valid.
+     */
+    private B4_Node lookup(byte[] hashIdP, int layerID) {
+        B4_RoutingTable.Snapshot snapshot = routingTables.get(layerID).getSnapshot();
+        byte[] localNodeIdP = localNode.getB4node().getPackedNodeID();
+        return nextHopCache.get(layerID, hashIdP, snapshot.getEpoch(), () -> route(hashIdP, snapshot, localNodeIdP));
+    }
+
+    /**
+     * @param hashID hash ID received as a query to find the next hop.
+     * @return Array indexed by layerID with the next hop of the hashID on every layer.
+     * <br>An entry is the localNode itself if it is the root node for the hashID on that layer.
+     * <br>An entry is null if the layer is not loaded, i.e. its access is disabled in the config file.
+     * <p>
+     * <br>The hashID is packed and its first nibble mismatch with the localNodeID is found once for all the layers.
+     * <br>Each layer is resolved on its own snapshot using the same logic as findNextHop.
+     */
+    public B4_Node[] findNextHopAllLayers(String hashID) {
+        byte[] hashIdP = B4_NodeTuple.packNodeID(hashID);
+        byte[] localNodeIdP = localNode.getB4node().getPackedNodeID();
+        int start = mismatchFrom(hashIdP, localNodeIdP);
+        B4_Node[] nextHops = new B4_Node[routingTables.size()];
+        for (int layerID = 0; layerID < nextHops.length; layerID++) {
+            B4_RoutingTable layer = routingTables.get(layerID);
+            if (!layer.isInitialised()) continue;
+            B4_RoutingTable.Snapshot snapshot = layer.getSnapshot();
+            B4_Node nextHop = nextHopCache.get(layerID, hashIdP, snapshot.getEpoch(), () -> route(hashIdP, snapshot, localNodeIdP, start));
+            nextHops[layerID] = nextHop == null ? localNode : nextHop;
+        }
+        return nextHops;
+    }
+
+    /**
+     * @param keys    hash IDs received as a query to find the next hop.
+     * @param layerID layer id on which the operation is to be performed.
+     * @return Array of next hops in the iteration order of keys. An entry is null if the next hop for that key is selfNode.
+     * <p>
+     * <br>This method resolves a whole batch of keys in one pass using the same logic as findNextHop.
+     * <br>Local NodeID and the routing table of the layer are fetched once for the batch.
+     * <br>Repeated keys are resolved only once.
+     */
+    public B4_Node[] findNextHops(Collection<String> keys, int layerID) {
+        B4_RoutingTable.Snapshot snapshot = routingTables.get(layerID).getSnapshot();
+        long epoch = snapshot.getEpoch();
+        byte[] localNodeIdP = localNode.getB4node().getPackedNodeID();
+        B4_Node[] nextHops = new B4_Node[keys.size()];
+        HashMap<ByteBuffer, B4_Node> resolved = new HashMap<>();
+        int n = 0;
+        for (String key : keys) {
+            byte[] hashIdP = B4_NodeTuple.packNodeID(key);
+            ByteBuffer packedKey = ByteBuffer.wrap(hashIdP);
+            if (resolved.containsKey(packedKey)) {
+                nextHops[n++] = resolved.get(packedKey);
+                continue;
+            }
+            B4_Node nextHop = nextHopCache.get(layerID, hashIdP, epoch, () -> route(hashIdP, snapshot, localNodeIdP));
+            resolved.put(packedKey, nextHop);
+            nextHops[n++] = nextHop;
+        }
+        return nextHops;
+    }
+
+    /**
+     * @param hashID  hash ID/NodeID to be checked.
+     * @param layerID layer id on which the operation is to be performed.
+     * @return True if the current Node is the root node for the hashID.
+     * <p>
+     * <br>Each layer keeps the immediate predecessor of the localNode among the entries of its routing table. It is found again
+     * only when a merge or purge changes the routing table.
+     * <br>The localNode is the root for every hashID lying between its predecessor (excluded) and the localNodeID (included),
+     * which takes two comparisons and does not walk the routing table.
+     * <br>Any other hashID is checked with findNextHop, whose result is kept in the next hop cache.
+     * <br>The check never changes the next hop returned by findNextHop.
+     */
+    public boolean isRootFor(String hashID, int layerID) {
+        B4_RoutingTable.Snapshot snapshot = routingTables.get(layerID).getSnapshot();
+        byte[] hashIdP = B4_NodeTuple.packNodeID(hashID);
+        if (snapshot.isRootFor(hashIdP)) return true;
+        return lookup(hashIdP, layerID) == null;
+    }
+
+    /**
+     * @param hashID  hash ID received as a query to find the next hop.
+     * @param layerID layer id on which the operation is to be performed.
+     * @param max     maximum number of candidates required.
+     * @return Array of at most max next hop candidates in the order they should be tried. Empty array if selfNode is the root node.
+     * <p>
+     * <br>This method is used by the forwarding layer to fail over to another node when the next hop is not reachable,
+     * without calling findNextHop again.
+     * <br>The first candidate is the node returned by findNextHop.
+     * <br>It is followed by the other valid entries of the same column of the routing table.
+     * <br>Thereafter nodes of the neighbour table are added, the ones sharing a longer prefix with the hashID first and
+     * lower RTT first among equal prefixes. A neighbour sharing a shorter prefix with the hashID than the localNode is not added.
+     * <br>All the candidates are taken from one snapshot of the layer.
+     */
+    public B4_Node[] findNextHopCandidates(String hashID, int layerID, int max) {
+        B4_RoutingTable.Snapshot snapshot = routingTables.get(layerID).getSnapshot();
+        B4_Node[][] routingTable = snapshot.getRoutingTable();
+        B4_Node[] neighbourTable = snapshot.getNeighbourTable();
+        byte[] localNodeIdP = localNode.getB4node().getPackedNodeID();
+        byte[] hashIdP = B4_NodeTuple.packNodeID(hashID);
+        B4_Node nextHop = nextHopCache.get(layerID, hashIdP, snapshot.getEpoch(), () -> route(hashIdP, snapshot, localNodeIdP));
+        ArrayList<B4_Node> candidates = new ArrayList<>();
+        if (nextHop == null || max <= 0) return new B4_Node[0];
+        candidates.add(nextHop);
+        B4_Node chosenCell = proximityRouting ? nextHop(hashIdP, routingTable, localNodeIdP, mismatchFrom(hashIdP, localNodeIdP)) : nextHop;
+        for (B4_Node[] row : routingTable) {
+            if (row[0] == chosenCell || row[1] == chosenCell || row[2] == chosenCell) {
+                for (B4_Node node : row) {
+                    addCandidate(candidates, node, localNodeIdP, max);
+                }
+                break;
+            }
+        }
+        int localPrefix = B4_NodeTuple.commonPrefixLength(hashIdP, localNodeIdP);
+        ArrayList<B4_Node> neighbours = new ArrayList<>();
+        for (B4_Node node : neighbourTable) {
+            if (node.getRtt() == -1 || node.getB4node().getNodeID().isEmpty()) continue;
+            if (B4_NodeTuple.commonPrefixLength(hashIdP, node.getB4node().getPackedNodeID()) >= localPrefix) neighbours.add(node);
+        }
+        neighbours.sort(Comparator.comparingInt((B4_Node node) -> -B4_NodeTuple.commonPrefixLength(hashIdP, node.getB4node().getPackedNodeID())).thenComparingDouble(B4_Node::getRtt));
+        for (B4_Node node : neighbours) {
+            addCandidate(candidates, node, localNodeIdP, max);
+        }
+        return candidates.toArray(new B4_Node[0]);
+    }
+
+    /**
+     * @param candidates   Candidates collected so far.
+     * @param node         Node to be added.
+     * @param localNodeIdP local NodeID in packed form.
+     * @param max          maximum number of candidates required.
+     *                     <br>Node is added only if it is not empty, not the localNode and not already a candidate.
+     */
+    private void addCandidate(ArrayList<B4_Node> candidates, B4_Node node, byte[] localNodeIdP, int max) {
+        if (candidates.size() >= max || node == null || node.getB4node().getNodeID().isEmpty()) return;
+        byte[] nodeIdP = node.getB4node().getPackedNodeID();
+        if (Arrays.equals(nodeIdP, localNodeIdP)) return;
+        for (B4_Node candidate : candidates) {
+            if (Arrays.equals(candidate.getB4node().getPackedNodeID(), nodeIdP)) return;
+        }
+        candidates.add(node);
+    }
+
+    /**
+     * @param hashID  hash ID/NodeID around which the nodes are required.
+     * @param k       number of nodes required.
+     * @param layerID layer id on which the operation is to be performed.
+     * @return Array of at most k nodes closest to the hashID on the ring, closest first. The current Node is not included.
+     * <p>
+     * <br>Nodes are taken from the peer index of the layer, which holds every node seen in the routing table, the neighbour table
+     * and the tables received for merging, not only the ones which got a place in the routing table.
+     * <br>The peer index is kept sorted on NodeID, so only the k successors and k predecessors of the hashID are looked at.
+     */
+    public B4_Node[] findClosestNodes(String hashID, int k, int layerID) {
+        B4_PeerIndex peerIndex = routingTables.get(layerID).getPeerIndex();
+        List<B4_Node> closestNodes = peerIndex.closest(B4_NodeTuple.packNodeID(hashID), k, localNode.getB4node().getPackedNodeID());
+        return closestNodes.toArray(new B4_Node[0]);
+    }
+
+    /**
+     * @param hashIdP      hash ID in packed form.
+     * @param localNodeIdP local NodeID in packed form.
+     * @return Position of the first nibble of the hashID which differs from the localNodeID, rt_dimension if there is none.
+     */
+    private int mismatchFrom(byte[] hashIdP, byte[] localNodeIdP) {
+        return Math.min(B4_NodeTuple.commonPrefixLength(hashIdP, localNodeIdP), rt_dimension);
+    }
+
+    /**
+     * @param hashIdP      hash ID in packed form.
+     * @param snapshot     Snapshot of the layer on which the operation is to be performed.
+     * @param localNodeIdP local NodeID in packed form.
+     * @return null if next hop is selfNode else return B4_Node object.
+     * <br>The routing table cell is chosen by nextHop. If proximity routing is enabled in the config file the cell may
+     * be replaced by a node with lower RTT, see proximityHop.
+     */
+    private B4_Node route(byte[] hashIdP, B4_RoutingTable.Snapshot snapshot, byte[] localNodeIdP) {
+        return route(hashIdP, snapshot, localNodeIdP, mismatchFrom(hashIdP, localNodeIdP));
+    }
+
+    /**
+     * @param start First nibble of the hashID which differs from the localNodeID, rt_dimension if there is none.
+     *              <br>Same as route(byte[], Snapshot, byte[]) with the first mismatch already known, so that it is found only once
+     *              when the same hashID is routed on several layers.
+     */
+    private B4_Node route(byte[] hashIdP, B4_RoutingTable.Snapshot snapshot, byte[] localNodeIdP, int start) {
+        B4_Node nextHop = nextHop(hashIdP, snapshot.getRoutingTable(), localNodeIdP, start);
+        if (!proximityRouting || nextHop == null) return nextHop;
+        return proximityHop(nextHop, hashIdP, snapshot, localNodeIdP);
+    }
+
+    /**
+     * @param nextHop      Routing table cell chosen for the hash ID.
+     * @param hashIdP      hash ID in packed form.
+     * @param snapshot     Snapshot of the layer on which the operation is to be performed.
+     * @param localNodeIdP local NodeID in packed form.
+     * @return Node with the lowest RTT among the chosen cell, the other cells of its column and the nodes of the neighbour
+     * table which share at least as long a prefix with the hash ID as the chosen cell.
+     * <br>On equal RTT the chosen cell is kept. A node whose RTT is not known is never preferred.
+     */
+    private B4_Node proximityHop(B4_Node nextHop, byte[] hashIdP, B4_RoutingTable.Snapshot snapshot, byte[] localNodeIdP) {
+        B4_Node[] neighbourTable = snapshot.getNeighbourTable();
+        int progress = B4_NodeTuple.commonPrefixLength(hashIdP, nextHop.getB4node().getPackedNodeID());
+        B4_Node best = nextHop;
+        float bestRtt = rttOf(nextHop, neighbourTable);
+        for (B4_Node[] row : snapshot.getRoutingTable()) {
+            if (row[0] == nextHop || row[1] == nextHop || row[2] == nextHop) {
+                for (B4_Node node : row) {
+                    if (isCloserHop(node, hashIdP, progress, localNodeIdP) && rttOf(node, neighbourTable) < bestRtt) {
+                        best = node;
+                        bestRtt = rttOf(node, neighbourTable);
+                    }
+                }
+                break;
+            }
+        }
+        for (B4_Node node : neighbourTable) {
+            if (node.getRtt() >= 0 && isCloserHop(node, hashIdP, progress, localNodeIdP) && node.getRtt() < bestRtt) {
+                best = node;
+                bestRtt = node.getRtt();
+            }
+        }
+        return best;
+    }
+
+    /**
+     * @return True if the node is not empty, is not the localNode and shares at least progress nibbles with the hash ID.
+     */
+    private boolean isCloserHop(B4_Node node, byte[] hashIdP, int progress, byte[] localNodeIdP) {
+        if (node.getB4node().getNodeID().isEmpty()) return false;
+        byte[] nodeIdP = node.getB4node().getPackedNodeID();
+        return !Arrays.equals(nodeIdP, localNodeIdP) && B4_NodeTuple.commonPrefixLength(hashIdP, nodeIdP) >= progress;
+    }
+
+    /**
+     * @param node           Node whose RTT is required.
+     * @param neighbourTable Neighbour table of the layer.
+     * @return RTT measured for the node in the neighbour table, else the RTT carried by the node, Float.MAX_VALUE if not known.
+     */
+    private float rttOf(B4_Node node, B4_Node[] neighbourTable) {
+        byte[] nodeIdP = node.getB4node().getPackedNodeID();
+        for (B4_Node neighbour : neighbourTable) {
+            if (neighbour.getRtt() >= 0 && !neighbour.getB4node().getNodeID().isEmpty() && Arrays.equals(neighbour.getB4node().getPackedNodeID(), nodeIdP))
+                return neighbour.getRtt();
+        }
+        return node.getRtt() > 0 ? node.getRtt() : Float.MAX_VALUE;
+    }
+
+    /**
+     * @param hashIdP      hash ID in packed form.
+     * @param routingTable Routing table of the layer on which the operation is to be performed.
+     * @param localNodeIdP local NodeID in packed form.
+     * @param start        First nibble of the hashID which differs from the localNodeID, see mismatchFrom.
+     * @return null if next hop is selfNode else return B4_Node object.
+     * <br>Common next hop logic used by findNextHop and findNextHops.
+     * <br>Columns before start are skipped as the hashID and localNodeID have the same nibble there.
+     */
+    private B4_Node nextHop(byte[] hashIdP, B4_Node[][] routingTable, byte[] localNodeIdP, int start) {
+        if (Arrays.equals(hashIdP, localNodeIdP)) {
             log.info("Current Node is the Root Node");
         } else {
-            for (int k = 0; k < rt_dimension; k++) {
-                if (hashIdC[k] != localNodeIdC[k]) {
-                    String hashIdChar = Character.toString(hashID.charAt(k));
-                    String localNodeIdChar = Character.toString(localNodeID.charAt(k));
-                    int hashIdHex = Integer.parseInt(hashIdChar, 16);
-                    int localNodeIdInHex = Integer.parseInt(localNodeIdChar, 16);
-                    if (!routingTables.get(0).getRoutingTable()[k][0].getB4node().getNodeID().isEmpty()) {
-                        assert routingTable != null;
-                        String preNodeIdChar = Character.toString(routingTable[k][0].getB4node().getNodeID().charAt(k));
-                        String sucNodeIdChar = Character.toString(routingTable[k][1].getB4node().getNodeID().charAt(k));
-                        int preNodeIdHex = Integer.parseInt(preNodeIdChar, 16);
-                        int sucNodeIdHex = Integer.parseInt(sucNodeIdChar, 16);
+            for (int k = start; k < rt_dimension; k++) {
+                int hashIdHex = B4_NodeTuple.nibble(hashIdP, k);
+                int localNodeIdInHex = B4_NodeTuple.nibble(localNodeIdP, k);
+                if (hashIdHex != localNodeIdInHex) {
+                    if (!routingTable[k][0].getB4node().getNodeID().isEmpty()) {
+                        int preNodeIdHex = routingTable[k][0].getB4node().getNibble(k);
+                        int sucNodeIdHex = routingTable[k][1].getB4node().getNibble(k);
 
                         if (preNodeIdHex <= hashIdHex && hashIdHex < localNodeIdInHex || preNodeIdHex > localNodeIdInHex && preNodeIdHex - 16 <= hashIdHex && hashIdHex < localNodeIdInHex || preNodeIdHex > localNodeIdInHex && preNodeIdHex - 16 <= hashIdHex - 16 && hashIdHex - 16 < localNodeIdInHex - 16) {
                             if (k != rt_dimension - 1) {
                                 for (int i = k + 1; i < rt_dimension; i++) {
                                     if (!routingTable[i][0].getB4node().getNodeID().isEmpty()) {
-                                        String nxtPreNodeIdChar = Character.toString(routingTable[i][0].getB4node().getNodeID().charAt(i));
-                                        String nxtHashIdChar = Character.toString(hashID.charAt(i));
-                                        String nxtLocalNodeIdChar = Character.toString(localNodeID.charAt(i));
-                                        String nxtSucNodeIdChar = Character.toString(routingTable[i][1].getB4node().getNodeID().charAt(i));
-
-                                        int nxtPreNodeIdHex = Integer.parseInt(nxtPreNodeIdChar, 16);
-                                        int nxtHashIdHex = Integer.parseInt(nxtHashIdChar, 16);
-                                        int nxtLocalNodeIdInHex = Integer.parseInt(nxtLocalNodeIdChar, 16);
-                                        int nxtSucNodeIdHex = Integer.parseInt(nxtSucNodeIdChar, 16);
+                                        int nxtPreNodeIdHex = routingTable[i][0].getB4node().getNibble(i);
+                                        int nxtHashIdHex = B4_NodeTuple.nibble(hashIdP, i);
+                                        int nxtLocalNodeIdInHex = B4_NodeTuple.nibble(localNodeIdP, i);
+                                        int nxtSucNodeIdHex = routingTable[i][1].getB4node().getNibble(i);
 
                                         if (nxtPreNodeIdHex <= nxtHashIdHex && nxtHashIdHex < nxtLocalNodeIdInHex || nxtPreNodeIdHex > nxtLocalNodeIdInHex && nxtPreNodeIdHex - 16 <= nxtHashIdHex && nxtHashIdHex < nxtLocalNodeIdInHex || nxtPreNodeIdHex > nxtLocalNodeIdInHex && nxtPreNodeIdHex - 16 <= nxtHashIdHex - 16 && nxtHashIdHex - 16 < nxtLocalNodeIdInHex - 16) {
                                             if (i != rt_dimension - 1) continue;
@@ -379,8 +896,7 @@ public class RoutingManager {
                                         } else if (nxtSucNodeIdHex >= nxtHashIdHex && nxtHashIdHex > nxtLocalNodeIdInHex || nxtSucNodeIdHex < nxtLocalNodeIdInHex && nxtSucNodeIdHex + 16 >= nxtHashIdHex && nxtHashIdHex > nxtLocalNodeIdInHex || nxtSucNodeIdHex < nxtLocalNodeIdInHex && nxtSucNodeIdHex + 16 >= nxtHashIdHex + 16 && nxtHashIdHex + 16 > nxtLocalNodeIdInHex) {
                                             return routingTable[i][1];
                                         } else if (!routingTable[i][2].getB4node().getNodeID().isEmpty()) {
-                                            String nxtMidNodeIdChar = Character.toString(routingTable[i][2].getB4node().getNodeID().charAt(i));
-                                            int nxtMidNodeIdHex = Integer.parseInt(nxtMidNodeIdChar, 16);
+                                            int nxtMidNodeIdHex = routingTable[i][2].getB4node().getNibble(i);
                                             if (nxtSucNodeIdHex < nxtHashIdHex && nxtHashIdHex < nxtMidNodeIdHex || nxtSucNodeIdHex > nxtMidNodeIdHex && nxtSucNodeIdHex - 16 < nxtHashIdHex && nxtHashIdHex < nxtMidNodeIdHex || nxtSucNodeIdHex > nxtMidNodeIdHex && nxtSucNodeIdHex - 16 < nxtHashIdHex - 16 && nxtHashIdHex - 16 < nxtMidNodeIdHex) {
                                                 return routingTable[i][1];
                                             } else if (nxtPreNodeIdHex > nxtHashIdHex && nxtHashIdHex > nxtMidNodeIdHex || nxtPreNodeIdHex < nxtMidNodeIdHex && nxtPreNodeIdHex + 16 > nxtHashIdHex && nxtHashIdHex > nxtMidNodeIdHex || nxtPreNodeIdHex < nxtMidNodeIdHex && nxtPreNodeIdHex + 16 > nxtHashIdHex + 16 && nxtHashIdHex + 16 > nxtMidNodeIdHex) {
@@ -396,8 +912,7 @@ public class RoutingManager {
                         } else if (sucNodeIdHex >= hashIdHex && hashIdHex > localNodeIdInHex || sucNodeIdHex < localNodeIdInHex && sucNodeIdHex + 16 >= hashIdHex && hashIdHex > localNodeIdInHex || sucNodeIdHex < localNodeIdInHex && sucNodeIdHex + 16 >= hashIdHex + 16 && hashIdHex + 16 > localNodeIdInHex) {
                             return routingTable[k][1];
                         } else if (!routingTable[k][2].getB4node().getNodeID().isEmpty()) {
-                            String midNodeIdChar = Character.toString(routingTable[k][2].getB4node().getNodeID().charAt(k));
-                            int midNodeIdHex = Integer.parseInt(midNodeIdChar, 16);
+                            int midNodeIdHex = routingTable[k][2].getB4node().getNibble(k);
                             if (sucNodeIdHex < hashIdHex && hashIdHex < midNodeIdHex || sucNodeIdHex > midNodeIdHex && sucNodeIdHex - 16 < hashIdHex && hashIdHex < midNodeIdHex || sucNodeIdHex > midNodeIdHex && sucNodeIdHex - 16 < hashIdHex - 16 && hashIdHex - 16 < midNodeIdHex) {
                                 return routingTable[k][1];
                             } else if (preNodeIdHex > hashIdHex && hashIdHex > midNodeIdHex || preNodeIdHex < midNodeIdHex && preNodeIdHex + 16 > hashIdHex && hashIdHex > midNodeIdHex || preNodeIdHex < midNodeIdHex && preNodeIdHex + 16 > hashIdHex + 16 && hashIdHex + 16 > midNodeIdHex) {
@@ -420,6 +935,8 @@ public class RoutingManager {
      *                       <p>
      *                       <br>The number of times the loop will run to check whether the node is reachable/alive can be changed by changing the PurgeLoopCount
      *                       value in the config file.
+     *                       <br>Each probe sweep works on the current snapshot of the layer; unreachable nodes are removed by publishing a new snapshot.
+     *                       <br>The routingTable and neighbourTable arguments are retained for compatibility, the tables of the layer are always used.
      */
     public void purgeRTEntry(int layerID, B4_Node[][] routingTable, B4_Node[] neighbourTable) {
         //Two counter arrays were created to keep track of no of failed ping.
@@ -428,6 +945,7 @@ public class RoutingManager {
         int purgeLoopCount = config.getPurgeLoopCount();
         B4_Layer b4_layer = new B4_Layer();
         String layerName = b4_layer.getLayerName(layerID);
+        B4_RoutingTable layer = routingTables.get(layerID);
         Thread purgeThread = new Thread(() -> {
             int count = 0;
             int dataPurged_RT = 0;
@@ -435,9 +953,14 @@ public class RoutingManager {
             long sleepingTime = 0;
             while (true) {
                 while (!(count >= purgeLoopCount)) {
+                    B4_RoutingTable.Snapshot sweep = layer.getSnapshot();
+                    B4_Node[][] sweepRT = sweep.getRoutingTable();
+                    B4_Node[] sweepNT = sweep.getNeighbourTable();
+                    B4_Node[][] purgedRT = new B4_Node[rt_dimension][3];
+                    B4_Node[] purgedNT = new B4_Node[nt_dimension];
                     for (int i = 0; i < rt_dimension; i++) {
                         for (int j = 0; j < 3; j++) {
-                            String ipAddressBase = routingTable[i][j].getIpAddress();
+                            String ipAddressBase = sweepRT[i][j].getIpAddress();
                             //System.out.println(ipAddressBase);
                             if (!ipAddressBase.isEmpty()) {
                                 try {
@@ -456,7 +979,7 @@ public class RoutingManager {
                                 }
                             }
                             if (counter_rtable[i][j] == purgeLoopCount) {
-                                routingTable[i][j] = new B4_Node(new B4_NodeTuple("", null, ""), "", "", "");
+                                purgedRT[i][j] = sweepRT[i][j];
                                 //System.out.println("Data is purged");
                                 log.info("Data is purged");
                                 dataPurged_RT = dataPurged_RT + 1;
@@ -465,7 +988,7 @@ public class RoutingManager {
                         }
                     }
                     for (int k = 0; k < nt_dimension; k++) {
-                        String ipAddressNeighbour = neighbourTable[k].getIpAddress();
+                        String ipAddressNeighbour = sweepNT[k].getIpAddress();
                         if (!ipAddressNeighbour.isEmpty()) {
                             try {
                                 InetAddress ping = InetAddress.getByName(ipAddressNeighbour);
@@ -483,14 +1006,14 @@ public class RoutingManager {
                             }
                         }
                         if (counter_neighbour[k] == purgeLoopCount) {
-                            neighbourTable[k] = new B4_Node(new B4_NodeTuple("", null, ""), "", "", "", -1);
+                            purgedNT[k] = sweepNT[k];
                             //System.out.println("Data is purged");
                             log.info("Data is purged");
                             dataPurged_Neighbour = dataPurged_Neighbour + 1;
                             counter_neighbour[k] = 0;
                         }
                     }
-                    routingTableToXML(layerName, layerID + "_" + layerName + "_" + localNode.getB4node().getNodeID(), routingTable, neighbourTable);
+                    if (purgeEntries(layer, purgedRT, purgedNT)) saveLayer(layerID);
                     count = count + 1;
                 }
                 count = 0;
@@ -520,6 +1043,42 @@ public class RoutingManager {
         purgeThread.start();
     }
 
+    /**
+     * @param layer    Layer from which the nodes are to be removed.
+     * @param purgedRT Nodes to be removed from the routing table at their position, null where nothing is to be removed.
+     * @param purgedNT Nodes to be removed from the neighbour table at their position, null where nothing is to be removed.
+     *                 <br>An entry is removed only if it still holds the same node, so entries merged during the probe sweep are kept.
+     * @return true if any entry is removed.
+     */
+    private boolean purgeEntries(B4_RoutingTable layer, B4_Node[][] purgedRT, B4_Node[] purgedNT) {
+        layer.lockWriter();
+        try {
+            B4_Node[][] routingTable = layer.copyRoutingTable();
+            B4_Node[] neighbourTable = layer.copyNeighbourTable();
+            boolean isChanged = false;
+            for (int i = 0; i < rt_dimension; i++) {
+                for (int j = 0; j < 3; j++) {
+                    if (purgedRT[i][j] != null && routingTable[i][j] == purgedRT[i][j]) {
+                        routingTable[i][j] = new B4_Node(new B4_NodeTuple("", null, ""), "", "", "");
+                        layer.getPeerIndex().remove(purgedRT[i][j]);
+                        isChanged = true;
+                    }
+                }
+            }
+            for (int k = 0; k < nt_dimension; k++) {
+                if (purgedNT[k] != null && neighbourTable[k] == purgedNT[k]) {
+                    neighbourTable[k] = new B4_Node(new B4_NodeTuple("", null, ""), "", "", "", -1);
+                    layer.getPeerIndex().remove(purgedNT[k]);
+                    isChanged = true;
+                }
+            }
+            if (isChanged) layer.publish(routingTable, neighbourTable, localNode.getB4node().getPackedNodeID());
+            return isChanged;
+        } finally {
+            layer.unlockWriter();
+        }
+    }
+
     /**
      * @param file File needs to be added to the inputBuffer.
      * @return True if file is added successfully.
@@ -547,6 +1106,8 @@ public class RoutingManager {
      * <br> This method is used to fetch file from the input buffer one by one.
      * <br> When this method is called a separate thread will run which will continuously scan input buffer for any file.
      * <br> If any file is found it will be fetch and given to respective functions for execution.
+     * <br> The work on a file is queued to the layer the file belongs to. Each layer runs its work one after the other in the
+     * order the files were fetched, while different layers run in parallel, so a large merge on one layer does not delay the others.
      */
     public void getFileFromInputBuffer() {
         Thread fetchThread = new Thread(() -> {
@@ -561,28 +1122,60 @@ public class RoutingManager {
                     B4_Layer b4_layer = new B4_Layer();
                     int layerID = b4_layer.fetchMaxLayerID();
                     for (int i = 0; i <= layerID; i++) {
+                        int id = i;
+                        B4_RoutingTable layer = routingTables.get(i);
                         if (file.getName().startsWith("" + i + "")) {
                             boolean isAccess = config.isLayerAccess(b4_layer.getLayerName(i));
                             if (isAccess) {
-                                mergeRoutingTable(file, i);
-                                generateRTTMergerTable(file, i);
-                                log.info("Routing Table Updated !!!");
+                                String layerPrefix = i + "_";
+                                List<File> files = new ArrayList<>();
+                                files.add(file);
+                                files.addAll(routingManagerBuffer.fetchAllFromInputBuffer(pending -> pending.getName().startsWith(layerPrefix)));
+                                count += files.size() - 1;
+                                layer.execute(() -> {
+                                    for (B4_MergeRoutingTable mergerTable : mergeRoutingTableFiles(files, id)) {
+                                        generateRTTMergerTable(mergerTable, id);
+                                    }
+                                    log.info("Routing Table Updated with " + files.size() + " file(s) !!!");
+                                });
                             }
                         }
                         if (file.getName().startsWith("RcvRTT_" + i)) {
-                            mergeNeighbourTable(file, i);
-                            log.info("Neighbour Table updated !!!");
+                            layer.execute(() -> {
+                                mergeNeighbourTable(file, id);
+                                log.info("Neighbour Table updated !!!");
+                            });
                         }
                         if (file.getName().startsWith("Table" + i)) {
-                            responseForIndexingManager("Table" + i + "_RootNodeCheck.xml");
-                            log.info("Indexing response Generation completed !!!");
+                            layer.execute(() -> {
+                                responseForIndexingManager("Table" + id + "_RootNodeCheck.xml");
+                                log.info("Indexing response Generation completed !!!");
+                            });
+                        }
+                        if (file.getName().startsWith("Digest_" + i + "_")) {
+                            layer.execute(() -> {
+                                respondToTableDigest(file, id);
+                                log.info("Table Digest compared !!!");
+                            });
+                        }
+                        if (file.getName().startsWith("RowDelta_" + i + "_")) {
+                            layer.execute(() -> {
+                                mergeRoutingTables(Collections.singletonList(file), id);
+                                log.info("Routing Table Updated with row delta !!!");
+                            });
                         }
                         if (file.getName().startsWith(("DiffR_" + i))) {
-                            convertDiffRTFile(file.getName());
-                            mergeDifferentialRoutingTable(file, i);
-                            diffGetRTTFile(i);
-                            receivedDifferentialNodes.clear();
-                            log.info("Routing Table Updated !!!");
+                            layer.execute(() -> {
+                                B4_DifferentialTable differentialTable = convertDiffRTFile(file.getName());
+                                if (differentialTable == null) return;
+                                if (isStaleDiff(differentialTable, id)) {
+                                    log.info("Stale Differential Routing Table discarded");
+                                } else {
+                                    mergeDifferentialRoutingTable(differentialTable, id);
+                                    diffGetRTTFile(differentialTable, id);
+                                    log.info("Routing Table Updated !!!");
+                                }
+                            });
                         }
                     }
                 }
@@ -713,7 +1306,7 @@ public class RoutingManager {
             }
             layerID = addNewLayerToArrayList();
             //log.info(layerID + "_" + layerName + "_" + nodeID);
-            init(layerName, layerID + "_" + layerName + "_" + nodeID, routingTables.get(layerID).getRoutingTable(), routingTables.get(layerID).getNeighbourTable());
+            init(layerName, layerID + "_" + layerName + "_" + nodeID, layerID);
         }
         return layerID;
     }
@@ -762,18 +1355,89 @@ public class RoutingManager {
 
     /**
      * @param layerID LayerID is given as the input argument.
-     * @return Routing Table of local node in B4_Node[][].
+     * @return Copy of the Routing Table of local node in B4_Node[][].
+     * <br> The copy is taken from a consistent snapshot of the layer; changes made to it do not affect the routing table.
      */
     public B4_Node[][] getRoutingTable(int layerID) {
-        return routingTables.get(layerID).getRoutingTable();
+        return routingTables.get(layerID).copyRoutingTable();
     }
 
     /**
      * @param layerID LayerID is given as the input argument.
-     * @return Neighbour Table of local Node in B4_Node[].
+     * @return Copy of the Neighbour Table of local Node in B4_Node[].
+     * <br> The copy is taken from a consistent snapshot of the layer; changes made to it do not affect the neighbour table.
      */
     public B4_Node[] getNeighbourTable(int layerID) {
-        return routingTables.get(layerID).getNeighbourTable();
+        return routingTables.get(layerID).copyNeighbourTable();
+    }
+
+    /**
+     * @param listener Listener to be informed of the changes made to the routing and neighbour tables of every layer.
+     *                 <br>The changes made by one merge, differential merge, neighbour table merge or purge are delivered
+     *                 together as one list of RoutingTableEvent, on a separate notification thread.
+     *                 <br>Adding a listener which is already registered has no effect.
+     */
+    public void addRoutingTableListener(RoutingTableListener listener) {
+        changeNotifier.addListener(listener);
+    }
+
+    /**
+     * @param listener Listener which is no longer to be informed of the changes.
+     */
+    public void removeRoutingTableListener(RoutingTableListener listener) {
+        changeNotifier.removeListener(listener);
+    }
+
+    /**
+     * @param layerID Layer whose routing table is summarised.
+     * @return Root of the Merkle tree over the rows of the routing table, in hex form.
+     * <br>Two nodes with the same digest for a layer hold the same nodes in every row of their routing tables.
+     */
+    public String getTableDigest(int layerID) {
+        return B4_TableDigest.toHex(routingTables.get(layerID).getSnapshot().getDigest().getRoot());
+    }
+
+    /**
+     * @param layerID Layer whose routing table is to be synchronised.
+     * @return File holding the digest and the row hashes of the routing table, added to the output buffer.
+     * <br>A node receiving the file replies with only the rows of its routing table whose hash differs among the rows
+     * which cover the same nodeIDs on both nodes, plus the row which covers this node (RowDelta file),
+     * which are merged when the reply is received. The glue code can call this method periodically in place of sending
+     * the whole routing table.
+     */
+    public File sendTableDigest(int layerID) {
+        B4_TableDigest digest = routingTables.get(layerID).getSnapshot().getDigest();
+        File file;
+        try {
+            DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+            DocumentBuilder builder = factory.newDocumentBuilder();
+            Document doc = builder.newDocument();
+            Element root = doc.createElement("TableDigest");
+            doc.appendChild(root);
+            root.setAttribute("SELF_NODE_ID", localNode.getB4node().getNodeID());
+            root.setAttribute("SELF_PUBLIC_KEY", utility.pubToStr(localNode.getB4node().getPublicKey()));
+            root.setAttribute("SELF_HASHID", localNode.getB4node().getHashID());
+            root.setAttribute("SELF_IP_ADDRESS", localNode.getIpAddress());
+            root.setAttribute("SELF_PORT_ADDRESS", localNode.getPortAddress());
+            root.setAttribute("SELF_TRANSPORT", localNode.getTransport());
+            root.setAttribute("ROOT", B4_TableDigest.toHex(digest.getRoot()));
+            byte[][] rowHashes = digest.getRowHashes();
+            for (int i = 0; i < rowHashes.length; i++) {
+                Element row = doc.createElement("ROW");
+                row.setAttribute("INDEX", "[" + i + "]");
+                row.appendChild(doc.createTextNode(B4_TableDigest.toHex(rowHashes[i])));
+                root.appendChild(row);
+            }
+            TransformerFactory transformerFactory = TransformerFactory.newInstance();
+            Transformer transformer = transformerFactory.newTransformer();
+            file = new File("Digest_" + layerID + "_" + localNode.getB4node().getNodeID() + ".xml");
+            transformer.transform(new DOMSource(doc), new StreamResult(file));
+        } catch (ParserConfigurationException | TransformerException e) {
+            log.error("Exception Occurred", e);
+            return null;
+        }
+        addFileToOutputBuffer(file);
+        return file;
     }
 
     /**
@@ -833,15 +1497,19 @@ public class RoutingManager {
             if (isDeleted) log.debug("NodeDetails file deleted");
         }
         nodeCryptography.newNodeIDProcess();
+        nextHopCache.clear();
         b4_nodeGeneration.newNodeGenProcess();
         generateNodeDetailsFile(nodeDetailFilePath);
         B4_Layer b4_layer = new B4_Layer();
         int maxLayerID = b4_layer.fetchMaxLayerID();
         for (int i = 0; i <= maxLayerID; i++) {
             String layerName = b4_layer.getLayerName(i);
-            File fileRoutingTable = getRoutingXMLFile(layerName, i);
-            boolean isRTFileDeleted = fileRoutingTable.delete();
+            String rtFileName = i + "_" + layerName + "_" + localNode.getB4node().getNodeID();
+            closeLog(mutationLogs.remove(i));
+            boolean isRTFileDeleted = layerTableFile(rtFileName).delete();
             if (isRTFileDeleted) log.debug("Initial " + layerName + " file deleted");
+            boolean isLogDeleted = new File(rtFileName + B4_MutationLog.EXTENSION).delete() | new File(rtFileName + B4_SnapshotFile.EXTENSION).delete();
+            if (isLogDeleted) log.debug("Initial " + layerName + " log and snapshot deleted");
         }
         setLocalNode();
         addToArrayList();
@@ -854,9 +1522,13 @@ public class RoutingManager {
      * @param layerID          Layer which want to access.
      * @return File - The XML file of routingTable and NeighbourTable of local node of respective layer.
      * <br> The glue code can send this file other node for merging.
+     * <br> If TableFormat is set to binary in the config file, the file is in the binary table format (.b4t).
+     * <br> Changes held in the log of the layer are written to the file before it is returned.
      */
     public File getRoutingXMLFile(String routingTableName, int layerID) {
-        File routingTableFile = new File(layerID + "_" + routingTableName + "_" + localNode.getB4node().getNodeID() + ".xml");
+        persistScheduler.flush(layerID);
+        checkpointLayer(routingTableName, layerID);
+        File routingTableFile = layerTableFile(layerID + "_" + routingTableName + "_" + localNode.getB4node().getNodeID());
         boolean isExist = routingTableFile.exists();
         if (isExist) return routingTableFile;
         else return null;
@@ -886,7 +1558,8 @@ public class RoutingManager {
 
     /**
      * @param indexFile Name of the Index file whose response needs to be send.
-     * @return response in XML File for indexingManger
+     * @return response in XML File for indexingManger. Each response is written to its own file named after the layer,
+     * the index file and a running number, so responses waiting in the output buffer are not overwritten.
      */
     public boolean responseForIndexingManager(String indexFile) {
         DocumentBuilderFactory builderFactory = DocumentBuilderFactory.newInstance();
@@ -912,32 +1585,44 @@ public class RoutingManager {
             element1.getParentNode().replaceChild(element2, element1);
 
             NodeList nodeList1 = doc.getElementsByTagName("DATA");
+            ArrayList<String> keys = new ArrayList<>();
+            ArrayList<Element> dataElements = new ArrayList<>();
             for (int i = 0; i < nodeList1.getLength(); i++) {
                 Node node = nodeList1.item(i);
                 if (node.getNodeType() == node.ELEMENT_NODE) {
                     Element element = (Element) node;
                     String index = node.getAttributes().getNamedItem("INDEX").getNodeValue();
                     String key = element.getElementsByTagName("KEY").item(0).getTextContent();
-                    if (findNextHop(key, layerID) == null) {
-                        element.getElementsByTagName("NEXTHOP").item(0).setTextContent("RootNode");
-                    } else {
-                        element.getElementsByTagName("NEXTHOP").item(0).setTextContent(findNextHop(key, layerID).getB4node().getNodeID());
-                    }
+                    keys.add(key);
+                    dataElements.add(element);
+                }
+            }
+            B4_Node[] nextHops = findNextHops(keys, layerID);
+            for (int i = 0; i < nextHops.length; i++) {
+                Element element = dataElements.get(i);
+                if (nextHops[i] == null) {
+                    element.getElementsByTagName("NEXTHOP").item(0).setTextContent("RootNode");
+                } else {
+                    element.getElementsByTagName("NEXTHOP").item(0).setTextContent(nextHops[i].getB4node().getNodeID());
                 }
             }
             TransformerFactory transformerFactory = TransformerFactory.newInstance();
             Transformer transformer = transformerFactory.newTransformer();
             DOMSource domSource = new DOMSource(doc);
-            file = new File("ResponseToIndexManager.xml");
+            String indexName = new File(indexFile).getName();
+            if (indexName.endsWith(".xml"))
+                indexName = indexName.substring(0, indexName.length() - 4);
+            file = new File("ResponseToIndexManager_" + layerID + "_" + indexName + "_" + responseSequence.incrementAndGet() + ".xml");
             StreamResult streamResult = new StreamResult(file);
             transformer.transform(domSource, streamResult);
-            log.debug("ResponseToIndexManager.xml" + "file created");
+            log.debug(file.getName() + " file created");
             addFileToOutputBuffer(file);
             fileAdded = true;
         } catch (ParserConfigurationException | SAXException | IOException | TransformerException e) {
             log.error("Exception Occurred", e);
         }
-        log.info("ResponseToIndexManager.xml" + "file send to output buffer");
+        if (fileAdded)
+            log.info(file.getName() + " file send to output buffer");
         return fileAdded;
     }
 
@@ -976,30 +1661,56 @@ public class RoutingManager {
     }
 
     /**
-     * @param mergerFile The file from which the merger routing table needs to be created.
-     * @return B4_RoutingTable Object
+     * @param mergerFile   The merger table file to be merged.
+     * @param layer        Layer whose writer lock is held by the caller.
+     * @param batch        Nodes read but not merged yet. Nodes left in it when the method returns are to be merged by the caller.
+     * @param routingTable Copy of the routing table of the layer in which the nodes are merged.
+     * @param differentialNodes List to which the nodes placed in the routing table are added.
+     * @param mergerTables List to which the self node and the neighbour table of the file are added if it is read completely.
+     * @return True if any entry of the routing table is changed.
+     * <br>The self node of the file is taken first and then the routing table nodes in the order of the file. The nodes are
+     * added to the batch while they are read, and the batch is merged by mergeNodes each time it holds ParallelMerge_threshold
+     * nodes, which gives the same result as merging the nodes one by one. Every node is also added to the peer index of the layer.
+     * <br>The self node and the neighbour table, which are bounded by the neighbour table dimension, are kept for generating
+     * the RTT merger table without reading the file again. Nothing is kept for a file which could not be read completely.
      */
-    private B4_Node[][] getMergerRoutingTable(String mergerFile) {
-        B4_MergeRoutingTable mergerTable = new B4_MergeRoutingTable(mergerFile);
-        return mergerTable.getRoutingTable();
-    }
+    private boolean streamMergerTable(File mergerFile, B4_RoutingTable layer, List<B4_Node> batch, B4_Node[][] routingTable, List<B4_Node> differentialNodes, List<B4_MergeRoutingTable> mergerTables) {
+        B4_Node[] mergerNeighbourTable = new B4_Node[nt_dimension];
+        B4_Node[] selfMergerNode = new B4_Node[1];
+        boolean[] isChanged = new boolean[1];
+        try {
+            new B4_TableReader().read(mergerFile.getAbsolutePath(), new B4_TableReader.Handler() {
+                @Override
+                public void selfNode(B4_Node selfNode) {
+                    selfMergerNode[0] = selfNode;
+                    merge(selfNode);
+                }
 
-    /**
-     * @param mergerFile The file from which the merger neighbour table needs to be created.
-     * @return B4_RoutingTable Object
-     */
-    private B4_Node[] getMergerNeighbourTable(String mergerFile) {
-        B4_MergeRoutingTable mergerTable = new B4_MergeRoutingTable(mergerFile);
-        return mergerTable.getNeighbourTable();
-    }
+                @Override
+                public void routingNode(int row, int column, B4_Node node) {
+                    merge(node);
+                }
 
-    /**
-     * @param mergerFile-Merger File need to be added
-     * @return B4_Node Object
-     */
-    private B4_Node getSelfNodeOfMergerTable(String mergerFile) {
-        B4_MergeRoutingTable mergerTable = new B4_MergeRoutingTable(mergerFile);
-        return mergerTable.getSelfNode();
+                @Override
+                public void neighbourNode(int index, B4_Node node) {
+                    if (index >= 0 && index < nt_dimension) mergerNeighbourTable[index] = node;
+                }
+
+                private void merge(B4_Node node) {
+                    batch.add(node);
+                    layer.getPeerIndex().add(node);
+                    if (batch.size() >= parallelMergeThreshold) {
+                        isChanged[0] |= mergeNodes(batch, routingTable, differentialNodes);
+                        batch.clear();
+                    }
+                }
+            });
+        } catch (IOException | XMLStreamException | RuntimeException e) {
+            log.error("Exception Occurred", e);
+            return isChanged[0];
+        }
+        if (selfMergerNode[0] != null) mergerTables.add(new B4_MergeRoutingTable(selfMergerNode[0], mergerNeighbourTable));
+        return isChanged[0];
     }
 
     /**
@@ -1021,170 +1732,331 @@ public class RoutingManager {
      *                     <br>Like mergerNodeId > LocalNodeId or mergerNodeId < LocalNodeId.
      *                     <br>Following is for checking the Third condition ie mergerNodeId lies between predecessor and successor.
      *                     <br>Since we are looking into a circular ring with nibble value range from 0-15,all possible conditions need to be checked.
+     * @param differentialNodes List to which the mergerNode is added if it is placed in the routing table.
+     * @return True if any entry of the routing table is changed.
      */
-    private void mergerRT(B4_Node mergerNode, B4_Node[][] routingTable) {
-        int preNodeIdInHex;
-        int sucNodeIdInHex;
-        String mergerNodeID = mergerNode.getB4node().getNodeID();
-        String localNodeID = localNode.getB4node().getNodeID();
-        char[] mergerNodeidInCharArray = mergerNodeID.toCharArray();
-        char[] localNodeidInCharArray = localNodeID.toCharArray();
+    private boolean mergerRT(B4_Node mergerNode, B4_Node[][] routingTable, List<B4_Node> differentialNodes) {
+        B4_NodeTuple mergerTuple = mergerNode.getB4node();
+        if (mergerTuple.getNodeID().isEmpty()) return false;
+        int k = firstMismatch(mergerTuple.getPackedNodeID());
+        if (k == -1) return false;
+        B4_Node[] row = routingTable[k];
+        if (isResident(mergerTuple.getPackedNodeID(), row)) return false;
+        B4_Node pre = row[0];
+        B4_Node suc = row[1];
+        B4_Node mid = row[2];
+        mergeIntoRow(mergerNode, k, row, differentialNodes);
+        return row[0] != pre || row[1] != suc || row[2] != mid;
+    }
 
+    /**
+     * @param mergerNodes  Nodes to be merged, in the order in which they are to be merged.
+     * @param routingTable Routing table in which the nodes are merged.
+     * @param differentialRTNodes List to which the nodes placed in the routing table are added, in the given order.
+     * @return True if any entry of the routing table is changed.
+     * <br>Gives the same result as calling mergerRT for the nodes one by one.
+     * <br>A node only changes the row of its first nibble mismatch with the localNodeID, so the nodes are first put in buckets by that row.
+     * <br>When there are at least ParallelMerge_threshold nodes (config file) the rows are merged in parallel on the common fork-join pool,
+     * each row taking its nodes in the given order. Nodes added to the differential routing table are put back in the given order.
+     */
+    private boolean mergeNodes(List<B4_Node> mergerNodes, B4_Node[][] routingTable, List<B4_Node> differentialRTNodes) {
+        int size = mergerNodes.size();
+        if (size < parallelMergeThreshold) {
+            boolean isChanged = false;
+            for (B4_Node mergerNode : mergerNodes) {
+                if (mergerNode != null) isChanged |= mergerRT(mergerNode, routingTable, differentialRTNodes);
+            }
+            return isChanged;
+        }
+        ArrayList<ArrayList<Integer>> buckets = new ArrayList<>(rt_dimension);
         for (int k = 0; k < rt_dimension; k++) {
-            char[] preNodeIdCharArray = routingTable[k][0].getB4node().getNodeID().toCharArray();
-            char[] sucNodeIdCharArray = routingTable[k][1].getB4node().getNodeID().toCharArray();
-            if (mergerNodeidInCharArray[k] != localNodeidInCharArray[k]) {
-                String mergerNodeIdChar = Character.toString(mergerNodeID.charAt(k));
-                String localNodeIdChar = Character.toString(localNodeID.charAt(k));
-                int mergerNodeIdInHex = Integer.parseInt(mergerNodeIdChar, 16);
-                int localNodeIdInHex = Integer.parseInt(localNodeIdChar, 16);
-
-                if (routingTable[k][0].getB4node().getNodeID().isEmpty() && routingTable[k][1].getB4node().getNodeID().isEmpty() && routingTable[k][2].getB4node().getNodeID().isEmpty()) {
-                    routingTable[k][0] = mergerNode;
-                    routingTable[k][1] = mergerNode;
-                    differentialRTNodes.add(mergerNode);
-                    break;
-                } else {
-                    String preNodeIdChar = Character.toString(routingTable[k][0].getB4node().getNodeID().charAt(k));
-                    preNodeIdInHex = Integer.parseInt(preNodeIdChar, 16);
-                    String sucNodeIdChar = Character.toString(routingTable[k][1].getB4node().getNodeID().charAt(k));
-                    sucNodeIdInHex = Integer.parseInt(sucNodeIdChar, 16);
-
-                    if (preNodeIdInHex <= mergerNodeIdInHex && mergerNodeIdInHex < localNodeIdInHex) {
-                        if (preNodeIdInHex == mergerNodeIdInHex) {
-                            for (int i = k + 1; i < rt_dimension; i++) {
-                                if (mergerNodeidInCharArray[i] != preNodeIdCharArray[i]) {
-                                    String nxtPreIdInChar = Character.toString(routingTable[k][0].getB4node().getNodeID().charAt(i));
-                                    String nxtMergerIdChar = Character.toString(mergerNodeID.charAt(i));
-                                    int nxtPreNodeIdInHex = Integer.parseInt(nxtPreIdInChar, 16);
-                                    int nxtMergerNodeIdInHex = Integer.parseInt(nxtMergerIdChar, 16);
-                                    if (nxtMergerNodeIdInHex > nxtPreNodeIdInHex) {
-                                        routingTable[k][0] = mergerNode;
-                                        differentialRTNodes.add(mergerNode);
-                                    }
-                                    break;
-                                }
-                            }
-                        } else if (preNodeIdInHex == sucNodeIdInHex) {
-                            routingTable[k][0] = mergerNode;
-                            differentialRTNodes.add(mergerNode);
-                            break;
-                        } else {
-                            routingTable[k][2] = routingTable[k][0];
-                            routingTable[k][0] = mergerNode;
-                            differentialRTNodes.add(mergerNode);
-                            break;
-                        }
-                    } else if (preNodeIdInHex > localNodeIdInHex) {
-                        if (preNodeIdInHex - 16 < mergerNodeIdInHex && mergerNodeIdInHex < localNodeIdInHex) {
-                            if (preNodeIdInHex != sucNodeIdInHex) {
-                                routingTable[k][2] = routingTable[k][0];
-                            }
-                            routingTable[k][0] = mergerNode;
-                            differentialRTNodes.add(mergerNode);
-                            break;
+            buckets.add(new ArrayList<>());
+        }
+        for (int i = 0; i < size; i++) {
+            B4_Node mergerNode = mergerNodes.get(i);
+            if (mergerNode == null || mergerNode.getB4node().getNodeID().isEmpty()) continue;
+            int k = firstMismatch(mergerNode.getB4node().getPackedNodeID());
+            if (k != -1) buckets.get(k).add(i);
+        }
+        List<List<B4_Node>> differentialNodes = new ArrayList<>(Collections.nCopies(size, null));
+        ArrayList<Callable<Boolean>> rowMerges = new ArrayList<>();
+        for (int k = 0; k < rt_dimension; k++) {
+            int row = k;
+            ArrayList<Integer> bucket = buckets.get(k);
+            if (!bucket.isEmpty()) rowMerges.add(() -> mergeRow(mergerNodes, bucket, row, routingTable[row], differentialNodes));
+        }
+        boolean isChanged = false;
+        try {
+            for (Future<Boolean> rowMerge : ForkJoinPool.commonPool().invokeAll(rowMerges)) {
+                isChanged |= rowMerge.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Merging interrupted", e);
+        } catch (ExecutionException e) {
+            log.error("Exception Occurred", e);
+            throw new IllegalStateException("Merging failed", e.getCause());
+        }
+        for (List<B4_Node> added : differentialNodes) {
+            if (added != null) differentialRTNodes.addAll(added);
+        }
+        return isChanged;
+    }
 
-                        } else if (mergerNodeIdInHex > localNodeIdInHex && preNodeIdInHex - 16 < mergerNodeIdInHex - 16 && mergerNodeIdInHex - 16 < localNodeIdInHex) {
-                            if (preNodeIdInHex != sucNodeIdInHex) {
-                                routingTable[k][2] = routingTable[k][0];
-                            }
-                            routingTable[k][0] = mergerNode;
-                            differentialRTNodes.add(mergerNode);
-                            break;
-
-                        } else if (preNodeIdInHex == mergerNodeIdInHex) {
-                            for (int i = k + 1; i < rt_dimension; i++) {
-                                if (mergerNodeidInCharArray[i] != preNodeIdCharArray[i]) {
-                                    String nxtPreIdInChar = Character.toString(routingTable[k][0].getB4node().getNodeID().charAt(i));
-                                    String nxtMergerIdChar = Character.toString(mergerNodeID.charAt(i));
-                                    int nxtPreNodeIdInHex = Integer.parseInt(nxtPreIdInChar, 16);
-                                    int nxtMergerNodeIdInHex = Integer.parseInt(nxtMergerIdChar, 16);
-                                    if (nxtMergerNodeIdInHex > nxtPreNodeIdInHex) {
-                                        routingTable[k][0] = mergerNode;
-                                        differentialRTNodes.add(mergerNode);
-                                    }
-                                    break;
-                                }
-                            }
+    /**
+     * @param mergerNodes       Nodes to be merged.
+     * @param bucket            Positions in mergerNodes of the nodes belonging to the row, in increasing order.
+     * @param k                 Row of the routing table.
+     * @param row               Predecessor, successor and middle entry of row k.
+     * @param differentialNodes Nodes added to the differential routing table, stored at the position of the merged node in mergerNodes.
+     *                          Every row sets only the positions of its own bucket.
+     * @return True if any entry of the row is changed.
+     */
+    private boolean mergeRow(List<B4_Node> mergerNodes, List<Integer> bucket, int k, B4_Node[] row, List<List<B4_Node>> differentialNodes) {
+        B4_Node pre = row[0];
+        B4_Node suc = row[1];
+        B4_Node mid = row[2];
+        for (int index : bucket) {
+            if (isResident(mergerNodes.get(index).getB4node().getPackedNodeID(), row)) continue;
+            ArrayList<B4_Node> added = new ArrayList<>(1);
+            mergeIntoRow(mergerNodes.get(index), k, row, added);
+            if (!added.isEmpty()) differentialNodes.set(index, added);
+        }
+        return row[0] != pre || row[1] != suc || row[2] != mid;
+    }
+
+    /**
+     * @param nodeIdP NodeID in packed form.
+     * @param row     Row of the routing table at the first nibble mismatch of the node with the localNodeID.
+     * @return True if the node is already present in the row.
+     * <br>A node can only be placed in the row of its first nibble mismatch, so the row works as the hash bucket of the node and
+     * the check needs at most three comparisons. Such a node is not merged again, which avoids running the merging algorithm and
+     * adding the node to the differential routing table again.
+     */
+    private static boolean isResident(byte[] nodeIdP, B4_Node[] row) {
+        for (B4_Node node : row) {
+            if (!node.getB4node().getNodeID().isEmpty() && Arrays.equals(node.getB4node().getPackedNodeID(), nodeIdP)) return true;
+        }
+        return false;
+    }
+
+    /**
+     * @param packedID NodeID/HashID in packed form.
+     * @return Position of the first nibble which differs from the local NodeID, -1 if there is no mismatch within the routing table dimension.
+     */
+    private int firstMismatch(byte[] packedID) {
+        byte[] localNodeIdP = localNode.getB4node().getPackedNodeID();
+        for (int k = 0; k < rt_dimension; k++) {
+            if (B4_NodeTuple.nibble(packedID, k) != B4_NodeTuple.nibble(localNodeIdP, k)) return k;
+        }
+        return -1;
+    }
+
+    /**
+     * @param mergerNode The node which need to be merged.
+     * @param k          Row of the routing table i.e position of the first nibble mismatch between mergerNodeId and localNodeId.
+     * @param row        Predecessor, successor and middle entry of row k.
+     * @param differentialNodes List to which the mergerNode is added if it is placed in the row.
+     *                   <br>Merging algorithm of mergerRT applied to the row obtained from the first nibble mismatch.
+     */
+    private void mergeIntoRow(B4_Node mergerNode, int k, B4_Node[] row, List<B4_Node> differentialNodes) {
+        int preNodeIdInHex;
+        int sucNodeIdInHex;
+        B4_NodeTuple mergerTuple = mergerNode.getB4node();
+        int mergerNodeIdInHex = mergerTuple.getNibble(k);
+        int localNodeIdInHex = localNode.getB4node().getNibble(k);
+        B4_NodeTuple preTuple = row[0].getB4node();
+        B4_NodeTuple sucTuple = row[1].getB4node();
+
+        if (preTuple.getNodeID().isEmpty() && sucTuple.getNodeID().isEmpty() && row[2].getB4node().getNodeID().isEmpty()) {
+            row[0] = mergerNode;
+            row[1] = mergerNode;
+            differentialNodes.add(mergerNode);
+            return;
+        }
+        preNodeIdInHex = preTuple.getNibble(k);
+        sucNodeIdInHex = sucTuple.getNibble(k);
+
+        if (preNodeIdInHex <= mergerNodeIdInHex && mergerNodeIdInHex < localNodeIdInHex) {
+            if (preNodeIdInHex == mergerNodeIdInHex) {
+                for (int i = k + 1; i < rt_dimension; i++) {
+                    int nxtPreNodeIdInHex = preTuple.getNibble(i);
+                    int nxtMergerNodeIdInHex = mergerTuple.getNibble(i);
+                    if (nxtMergerNodeIdInHex != nxtPreNodeIdInHex) {
+                        if (nxtMergerNodeIdInHex > nxtPreNodeIdInHex) {
+                            row[0] = mergerNode;
+                            differentialNodes.add(mergerNode);
                         }
+                        break;
                     }
+                }
+            } else if (preNodeIdInHex == sucNodeIdInHex) {
+                row[0] = mergerNode;
+                differentialNodes.add(mergerNode);
+                return;
+            } else {
+                row[2] = row[0];
+                row[0] = mergerNode;
+                differentialNodes.add(mergerNode);
+                return;
+            }
+        } else if (preNodeIdInHex > localNodeIdInHex) {
+            if (preNodeIdInHex - 16 < mergerNodeIdInHex && mergerNodeIdInHex < localNodeIdInHex) {
+                if (preNodeIdInHex != sucNodeIdInHex) {
+                    row[2] = row[0];
+                }
+                row[0] = mergerNode;
+                differentialNodes.add(mergerNode);
+                return;
 
-                    if (sucNodeIdInHex >= mergerNodeIdInHex && mergerNodeIdInHex > localNodeIdInHex) {
-                        if (sucNodeIdInHex == mergerNodeIdInHex) {
-                            for (int i = k + 1; i < rt_dimension; i++) {
-                                if (mergerNodeidInCharArray[i] != sucNodeIdCharArray[i]) {
-                                    String nxtSucIdInChar = Character.toString(routingTable[k][1].getB4node().getNodeID().charAt(i));
-                                    String nxtMergerIdChar = Character.toString(mergerNodeID.charAt(i));
-                                    int nxtSucNodeIdInHex = Integer.parseInt(nxtSucIdInChar, 16);
-                                    int nxtMergerNodeIdInHex = Integer.parseInt(nxtMergerIdChar, 16);
-                                    if (nxtMergerNodeIdInHex < nxtSucNodeIdInHex) {
-                                        routingTable[k][1] = mergerNode;
-                                        differentialRTNodes.add(mergerNode);
-                                    }
-                                    break;
-                                }
-                            }
-                        } else if (preNodeIdInHex == sucNodeIdInHex) {
-                            routingTable[k][1] = mergerNode;
-                            break;
-                        } else {
-                            routingTable[k][2] = routingTable[k][1];
-                            routingTable[k][1] = mergerNode;
-                            differentialRTNodes.add(mergerNode);
-                            break;
+            } else if (mergerNodeIdInHex > localNodeIdInHex && preNodeIdInHex - 16 < mergerNodeIdInHex - 16 && mergerNodeIdInHex - 16 < localNodeIdInHex) {
+                if (preNodeIdInHex != sucNodeIdInHex) {
+                    row[2] = row[0];
+                }
+                row[0] = mergerNode;
+                differentialNodes.add(mergerNode);
+                return;
+
+            } else if (preNodeIdInHex == mergerNodeIdInHex) {
+                for (int i = k + 1; i < rt_dimension; i++) {
+                    int nxtPreNodeIdInHex = preTuple.getNibble(i);
+                    int nxtMergerNodeIdInHex = mergerTuple.getNibble(i);
+                    if (nxtMergerNodeIdInHex != nxtPreNodeIdInHex) {
+                        if (nxtMergerNodeIdInHex > nxtPreNodeIdInHex) {
+                            row[0] = mergerNode;
+                            differentialNodes.add(mergerNode);
                         }
-                    } else if (sucNodeIdInHex < localNodeIdInHex) {
-                        if (sucNodeIdInHex + 16 > mergerNodeIdInHex && mergerNodeIdInHex > localNodeIdInHex) {
-                            if (preNodeIdInHex != sucNodeIdInHex) {
-                                routingTable[k][2] = routingTable[k][1];
-                            }
-                            routingTable[k][1] = mergerNode;
-                            differentialRTNodes.add(mergerNode);
-                            break;
+                        break;
+                    }
+                }
+            }
+        }
 
-                        } else if (mergerNodeIdInHex < localNodeIdInHex && sucNodeIdInHex + 16 > mergerNodeIdInHex + 16 && mergerNodeIdInHex + 16 > localNodeIdInHex) {
-                            if (preNodeIdInHex != sucNodeIdInHex) {
-                                routingTable[k][2] = routingTable[k][1];
-                            }
-                            routingTable[k][1] = mergerNode;
-                            differentialRTNodes.add(mergerNode);
-                            break;
-                        } else if (sucNodeIdInHex == mergerNodeIdInHex) {
-                            for (int i = k + 1; i < rt_dimension; i++) {
-                                if (mergerNodeidInCharArray[i] != sucNodeIdCharArray[i]) {
-                                    String nxtSucIdInChar = Character.toString(routingTable[k][1].getB4node().getNodeID().charAt(i));
-                                    String nxtMergerIdChar = Character.toString(mergerNodeID.charAt(i));
-                                    int nxtSucNodeIdInHex = Integer.parseInt(nxtSucIdInChar, 16);
-                                    int nxtMergerNodeIdInHex = Integer.parseInt(nxtMergerIdChar, 16);
-                                    if (nxtMergerNodeIdInHex < nxtSucNodeIdInHex) {
-                                        routingTable[k][1] = mergerNode;
-                                        differentialRTNodes.add(mergerNode);
-                                    }
-                                    break;
-                                }
-                            }
+        if (sucNodeIdInHex >= mergerNodeIdInHex && mergerNodeIdInHex > localNodeIdInHex) {
+            if (sucNodeIdInHex == mergerNodeIdInHex) {
+                for (int i = k + 1; i < rt_dimension; i++) {
+                    int nxtSucNodeIdInHex = sucTuple.getNibble(i);
+                    int nxtMergerNodeIdInHex = mergerTuple.getNibble(i);
+                    if (nxtMergerNodeIdInHex != nxtSucNodeIdInHex) {
+                        if (nxtMergerNodeIdInHex < nxtSucNodeIdInHex) {
+                            row[1] = mergerNode;
+                            differentialNodes.add(mergerNode);
                         }
+                        break;
                     }
+                }
+            } else if (preNodeIdInHex == sucNodeIdInHex) {
+                row[1] = mergerNode;
+                return;
+            } else {
+                row[2] = row[1];
+                row[1] = mergerNode;
+                differentialNodes.add(mergerNode);
+                return;
+            }
+        } else if (sucNodeIdInHex < localNodeIdInHex) {
+            if (sucNodeIdInHex + 16 > mergerNodeIdInHex && mergerNodeIdInHex > localNodeIdInHex) {
+                if (preNodeIdInHex != sucNodeIdInHex) {
+                    row[2] = row[1];
+                }
+                row[1] = mergerNode;
+                differentialNodes.add(mergerNode);
+                return;
 
-                    if (sucNodeIdInHex < mergerNodeIdInHex && mergerNodeIdInHex < preNodeIdInHex || sucNodeIdInHex < mergerNodeIdInHex && mergerNodeIdInHex < preNodeIdInHex + 16 || sucNodeIdInHex < mergerNodeIdInHex + 16 && mergerNodeIdInHex + 16 < preNodeIdInHex + 16) {
-                        if (!routingTable[k][2].getB4node().getNodeID().isEmpty()) {
-                            String existingMidNodeIdChar = Character.toString(routingTable[k][2].getB4node().getNodeID().charAt(k));
-                            int existingMidNodeIdHex = Integer.parseInt(existingMidNodeIdChar, 16);
-                            if (Math.abs(((localNodeIdInHex + 8) % 16) - mergerNodeIdInHex) < Math.abs(((localNodeIdInHex + 8) % 16) - existingMidNodeIdHex)) {
-                                routingTable[k][2] = mergerNode;
-                                differentialRTNodes.add(mergerNode);
-                                break;
-                            }
-                        } else {
-                            routingTable[k][2] = mergerNode;
-                            differentialRTNodes.add(mergerNode);
-                            break;
+            } else if (mergerNodeIdInHex < localNodeIdInHex && sucNodeIdInHex + 16 > mergerNodeIdInHex + 16 && mergerNodeIdInHex + 16 > localNodeIdInHex) {
+                if (preNodeIdInHex != sucNodeIdInHex) {
+                    row[2] = row[1];
+                }
+                row[1] = mergerNode;
+                differentialNodes.add(mergerNode);
+                return;
+            } else if (sucNodeIdInHex == mergerNodeIdInHex) {
+                for (int i = k + 1; i < rt_dimension; i++) {
+                    int nxtSucNodeIdInHex = sucTuple.getNibble(i);
+                    int nxtMergerNodeIdInHex = mergerTuple.getNibble(i);
+                    if (nxtMergerNodeIdInHex != nxtSucNodeIdInHex) {
+                        if (nxtMergerNodeIdInHex < nxtSucNodeIdInHex) {
+                            row[1] = mergerNode;
+                            differentialNodes.add(mergerNode);
                         }
+                        break;
                     }
                 }
-                break;
             }
         }
+
+        if (sucNodeIdInHex < mergerNodeIdInHex && mergerNodeIdInHex < preNodeIdInHex || sucNodeIdInHex < mergerNodeIdInHex && mergerNodeIdInHex < preNodeIdInHex + 16 || sucNodeIdInHex < mergerNodeIdInHex + 16 && mergerNodeIdInHex + 16 < preNodeIdInHex + 16) {
+            if (!row[2].getB4node().getNodeID().isEmpty()) {
+                int existingMidNodeIdHex = row[2].getB4node().getNibble(k);
+                if (Math.abs(((localNodeIdInHex + 8) % 16) - mergerNodeIdInHex) < Math.abs(((localNodeIdInHex + 8) % 16) - existingMidNodeIdHex)) {
+                    row[2] = mergerNode;
+                    differentialNodes.add(mergerNode);
+                }
+            } else {
+                row[2] = mergerNode;
+                differentialNodes.add(mergerNode);
+            }
+        }
+    }
+
+    /**
+     * @param rtFileName Name of the routing table file of a layer without extension.
+     * @return File of the format set by TableFormat in the config file. If only a file of the other format exists, e.g. the
+     * XML file written before the format was changed, that file is returned so that it can still be read.
+     */
+    private File layerTableFile(String rtFileName) {
+        File xmlFile = new File(rtFileName + ".xml");
+        File binaryFile = new File(rtFileName + B4_TableCodec.EXTENSION);
+        if (binaryTables) return binaryFile.exists() || !xmlFile.exists() ? binaryFile : xmlFile;
+        return xmlFile.exists() || !binaryFile.exists() ? xmlFile : binaryFile;
+    }
+
+    /**
+     * @param rtTag             Tag of the table.
+     * @param fileName          Desired name of the file without extension.
+     * @param routingTable      Routing table, null if the file has none.
+     * @param rows              Rows of the routing table to be written.
+     * @param neighbourTable    Neighbour table, null if the file has none.
+     * @param differentialNodes Differential routing table nodes, null if the file has none.
+     * @param sequence          Sequence number of the table, -1 if none.
+     * @return File written in the binary table format, null if it could not be written.
+     * <br>The table is written to a temporary file which then replaces the file in one step, so a crash never leaves a
+     * file cut short.
+     */
+    private File writeBinaryTable(String rtTag, String fileName, B4_Node[][] routingTable, List<Integer> rows, B4_Node[] neighbourTable, List<B4_Node> differentialNodes, long sequence) {
+        File file = new File(fileName + B4_TableCodec.EXTENSION);
+        File tempFile = new File(file.getPath() + ".tmp");
+        try (B4_TableCodec.Writer writer = new B4_TableCodec.Writer(tempFile, rtTag, localNode, sequence)) {
+            if (routingTable != null) {
+                for (int i : rows) {
+                    for (int j = 0; j < 3; j++) {
+                        writer.routingNode(i, j, routingTable[i][j]);
+                    }
+                }
+            }
+            if (neighbourTable != null) {
+                for (int i = 0; i < neighbourTable.length; i++) {
+                    writer.neighbourNode(i, neighbourTable[i]);
+                }
+            }
+            if (differentialNodes != null) {
+                for (int i = 0; i < differentialNodes.size(); i++) {
+                    writer.differentialNode(i, differentialNodes.get(i));
+                }
+            }
+        } catch (IOException e) {
+            log.error("Exception Occurred", e);
+            if (!tempFile.delete()) log.debug(tempFile.getName() + " not deleted");
+            return null;
+        }
+        try {
+            Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            log.error("Exception Occurred", e);
+            return null;
+        }
+        log.debug(fileName + " file updated");
+        return file;
     }
 
     /**
@@ -1196,6 +2068,14 @@ public class RoutingManager {
      *                       <br>Here XML parsing is used.
      */
     private void routingTableToXML(String rtTag, String fileName, B4_Node[][] routingTable, B4_Node[] neighbourTable) {
+        if (binaryTables) {
+            List<Integer> rows = new ArrayList<>();
+            for (int i = 0; i < rt_dimension; i++) {
+                rows.add(i);
+            }
+            writeBinaryTable(rtTag, fileName, routingTable, rows, neighbourTable, null, -1);
+            return;
+        }
         String selfNodeId = localNode.getB4node().getNodeID();
         String selfNodePub = utility.pubToStr(localNode.getB4node().getPublicKey());
         String selfHashID = localNode.getB4node().getHashID();
@@ -1295,22 +2175,40 @@ public class RoutingManager {
 
     /**
      * This function is used to add the layer to the array list one after the other.
+     * Layers which are already present are replaced and shut down.
      */
     private void addToArrayList() {
         B4_Layer b4_layer = new B4_Layer();
         int totalLayer = b4_layer.fetchMaxLayerID();
         for (int i = 0; i <= totalLayer; i++) {
-            routingTables.add(i, new B4_RoutingTable(rt_dimension, nt_dimension));
+            if (i < routingTables.size()) {
+                routingTables.set(i, newLayer(i)).shutdown();
+            } else {
+                routingTables.add(i, newLayer(i));
+            }
+        }
+        while (routingTables.size() > totalLayer + 1) {
+            routingTables.remove(routingTables.size() - 1).shutdown();
         }
     }
 
+    /**
+     * @param layerID Layer for which the routing table is created.
+     * @return Empty routing table of the layer whose publishes are reported to the RoutingTableListeners.
+     */
+    private B4_RoutingTable newLayer(int layerID) {
+        B4_RoutingTable layer = new B4_RoutingTable(layerID, rt_dimension, nt_dimension, config.getPeerIndexSize());
+        layer.setPublishListener((previous, current) -> changeNotifier.published(layerID, previous, current));
+        return layer;
+    }
+
     /**
      * @return Total number of layer available in the system presently.
      */
     private int addNewLayerToArrayList() {
         B4_Layer b4_layer = new B4_Layer();
         int totalLayer = b4_layer.fetchMaxLayerID();
-        routingTables.add(totalLayer, new B4_RoutingTable(rt_dimension, nt_dimension));
+        routingTables.add(totalLayer, newLayer(totalLayer));
         return totalLayer;
     }
 
@@ -1330,7 +2228,7 @@ public class RoutingManager {
                 String layerName = properties.getProperty("" + i + "");
                 boolean access = config.isLayerAccess(layerName);
                 if (access)
-                    init(layerName, i + "_" + layerName + "_" + nodeID, routingTables.get(i).getRoutingTable(), routingTables.get(i).getNeighbourTable());
+                    init(layerName, i + "_" + layerName + "_" + nodeID, i);
             } catch (IOException e) {
                 log.error("Exception Occurred", e);
             }
@@ -1342,73 +2240,36 @@ public class RoutingManager {
      * @param routingTable   Object of Routing Table.
      * @param neighbourTable Object of Neighbour Table.
      *                       <br>This function is used to fetch the file from XML and convert it into routing table and neighbour table object.
+     *                       <br>The file is read in one forward pass as a stream of XML events and every node is put in the table as
+     *                       soon as it is read. An entry whose INDEX is outside the table dimension is skipped.
      */
     private void fetchFromXML(String rtFileName, B4_Node[][] routingTable, B4_Node[] neighbourTable) {
         try {
-            DocumentBuilderFactory builderFactory = DocumentBuilderFactory.newInstance();
-            DocumentBuilder documentBuilder = builderFactory.newDocumentBuilder();
-            Document doc = documentBuilder.parse(new File(rtFileName + ".xml"));
-            doc.getDocumentElement().normalize();
-            //String rootElement = doc.getDocumentElement().getNodeName();
-
-            NodeList nodeList = doc.getElementsByTagName("B4_Node");
-            for (int i = 0; i < nodeList.getLength(); i++) {
-                Node node = nodeList.item(i);
-                if (node.getNodeType() == node.ELEMENT_NODE) {
-                    Element element = (Element) node;
-
-                    //Get the value of ID attribute
-                    String index = node.getAttributes().getNamedItem("INDEX").getNodeValue();
-                    //Get value of all sub-Elements
-                    String nodeID = element.getElementsByTagName("NODEID").item(0).getTextContent();
-                    String nodePub = element.getElementsByTagName("PUBLICKEY").item(0).getTextContent();
-                    String nodeHash = element.getElementsByTagName("HASHID").item(0).getTextContent();
-                    String nodeIP = element.getElementsByTagName("NODEIP").item(0).getTextContent();
-                    String nodePort = element.getElementsByTagName("NODEPORT").item(0).getTextContent();
-                    String nodeTransport = element.getElementsByTagName("NODETRANSPORT").item(0).getTextContent();
-                    Pattern pattern = Pattern.compile("\\[([^]]+)\\]");
-                    Matcher matcher = pattern.matcher(index);
-                    matcher.find();
-                    int index1 = Integer.parseInt(matcher.group(1));
-                    matcher.find();
-                    int index2 = Integer.parseInt(matcher.group(1));
-                    routingTable[index1][index2] = new B4_Node(new B4_NodeTuple(nodeID, utility.strToPub(nodePub), nodeHash), nodeIP, nodePort, nodeTransport);
+            new B4_TableReader().read(layerTableFile(rtFileName).getPath(), new B4_TableReader.Handler() {
+                @Override
+                public void routingNode(int row, int column, B4_Node node) {
+                    if (row >= 0 && row < routingTable.length && column >= 0 && column < routingTable[row].length)
+                        routingTable[row][column] = node;
                 }
-            }
-            NodeList nodeList1 = doc.getElementsByTagName("NEIGHBOUR");
-            for (int i = 0; i < nodeList1.getLength(); i++) {
-                Node node = nodeList1.item(i);
-                if (node.getNodeType() == node.ELEMENT_NODE) {
-                    Element element = (Element) node;
-                    String index = node.getAttributes().getNamedItem("INDEX").getNodeValue();
-                    //Get value of all sub-Elements
-                    String nodeID = element.getElementsByTagName("NODEID").item(0).getTextContent();
-                    String nodePub = element.getElementsByTagName("PUBLICKEY").item(0).getTextContent();
-                    String hashID = element.getElementsByTagName("HASHID").item(0).getTextContent();
-                    String nodeIP = element.getElementsByTagName("NODEIP").item(0).getTextContent();
-                    String nodePort = element.getElementsByTagName("NODEPORT").item(0).getTextContent();
-                    String nodeTransport = element.getElementsByTagName("NODETRANSPORT").item(0).getTextContent();
-                    String nodeRTT = element.getElementsByTagName("NODERTT").item(0).getTextContent();
-
-                    Pattern pattern = Pattern.compile("\\[([^]]+)\\]");
-                    Matcher matcher = pattern.matcher(index);
-                    matcher.find();
-                    int index1 = Integer.parseInt(matcher.group(1));
-                    neighbourTable[index1] = new B4_Node(new B4_NodeTuple(nodeID, utility.strToPub(nodePub), hashID), nodeIP, nodePort, nodeTransport, Float.parseFloat(nodeRTT));
+
+                @Override
+                public void neighbourNode(int index, B4_Node node) {
+                    if (index >= 0 && index < neighbourTable.length) neighbourTable[index] = node;
                 }
-            }
-        } catch (ParserConfigurationException | IOException | SAXException | NullPointerException e) {
+            });
+        } catch (IOException | XMLStreamException | RuntimeException e) {
             log.error("Exception Occurred", e);
         }
     }
 
     /**
-     * @param mergerTableDataFile The routingTable file for which the rtt value of the neighbour table need to be calculated. <br>
-     * @param layerID             layer Id on which the operation needs to be performed.
+     * @param mergerTable Self node and neighbour table of the routingTable file for which the rtt value of the neighbour
+     *                    table need to be calculated, kept while the file was merged. <br>
+     * @param layerID     layer Id on which the operation needs to be performed.
      */
-    private void generateRTTMergerTable(File mergerTableDataFile, int layerID) {
-        B4_Node selfNodeOfMergerTable = getSelfNodeOfMergerTable(mergerTableDataFile.getName());
-        B4_Node[] mergerNeighbourTable = getMergerNeighbourTable(mergerTableDataFile.getName());
+    private void generateRTTMergerTable(B4_MergeRoutingTable mergerTable, int layerID) {
+        B4_Node selfNodeOfMergerTable = mergerTable.getSelfNode();
+        B4_Node[] mergerNeighbourTable = mergerTable.getNeighbourTable();
         String selfNodeIdMerger = selfNodeOfMergerTable.getB4node().getNodeID();
         String selfNodePubMerger = utility.pubToStr(selfNodeOfMergerTable.getB4node().getPublicKey());
         String selfHashIDMerger = selfNodeOfMergerTable.getB4node().getHashID();
@@ -1479,6 +2340,14 @@ public class RoutingManager {
     }
 
     private File routingTable1ToXML(String rtTag, String fileName, B4_Node[][] routingTable) {
+        List<Integer> rows = new ArrayList<>();
+        for (int i = 0; i < rt_dimension; i++) {
+            rows.add(i);
+        }
+        return routingRowsToXML(rtTag, fileName, routingTable, rows);
+    }
+
+    private File routingRowsToXML(String rtTag, String fileName, B4_Node[][] routingTable, List<Integer> rows) {
         File file = null;
         String selfNodeId = localNode.getB4node().getNodeID();
         String selfNodePub = utility.pubToStr(localNode.getB4node().getPublicKey());
@@ -1501,7 +2370,7 @@ public class RoutingManager {
             root.setAttribute("SELF_PORT_ADDRESS", selfPortAddress);
             root.setAttribute("SELF_TRANSPORT", selfTransport);
 
-            for (int i = 0; i < rt_dimension; i++) {
+            for (int i : rows) {
                 for (int j = 0; j < 3; j++) {
                     Element row = doc.createElement("B4_Node");
                     root.appendChild(row);
@@ -1613,7 +2482,74 @@ public class RoutingManager {
         return file;
     }
 
-    private File createDifferentialTable(String rtTag, String fileName) {
+    /**
+     * @param digestFile Table digest received from another node.
+     * @param layerID    Layer of the table digest.
+     *                   <br>Only the rows below the common prefix length of the sender and the local node cover the same
+     *                   nodeIDs on both nodes, so only their hashes are compared. The rows among them whose hash differs
+     *                   and the row at the common prefix length, which covers the sender itself, are written to a RowDelta
+     *                   file addressed to the sender and added to the output buffer. The sender merges the nodes of these
+     *                   rows like a received routing table.
+     */
+    private void respondToTableDigest(File digestFile, int layerID) {
+        B4_TableDigest digest = routingTables.get(layerID).getSnapshot().getDigest();
+        String senderID;
+        int commonPrefixLength;
+        byte[][] remoteRowHashes;
+        try {
+            DocumentBuilderFactory builderFactory = DocumentBuilderFactory.newInstance();
+            DocumentBuilder documentBuilder = builderFactory.newDocumentBuilder();
+            Document doc = documentBuilder.parse(digestFile);
+            Element root = doc.getDocumentElement();
+            senderID = root.getAttribute("SELF_NODE_ID");
+            commonPrefixLength = B4_NodeTuple.commonPrefixLength(B4_NodeTuple.packNodeID(senderID), localNode.getB4node().getPackedNodeID());
+            NodeList rows = doc.getElementsByTagName("ROW");
+            remoteRowHashes = new byte[rows.getLength()][];
+            for (int i = 0; i < rows.getLength(); i++) {
+                Element row = (Element) rows.item(i);
+                int index = B4_TableReader.parseIndex(row.getAttribute("INDEX"))[0];
+                if (index >= 0 && index < remoteRowHashes.length) remoteRowHashes[index] = B4_NodeTuple.packNodeID(row.getTextContent().trim());
+            }
+        } catch (ParserConfigurationException | SAXException | IOException | RuntimeException e) {
+            log.error("Exception Occurred", e);
+            return;
+        }
+        List<Integer> rows = digest.differingRows(remoteRowHashes, commonPrefixLength);
+        if (rows.isEmpty()) return;
+        B4_Node[][] routingTable = routingTables.get(layerID).getRoutingTable();
+        String fileName = "RowDelta_" + layerID + "_" + senderID;
+        File file = binaryTables ? writeBinaryTable("RowDelta", fileName, routingTable, rows, null, null, -1) : routingRowsToXML("RowDelta", fileName, routingTable, rows);
+        if (file == null) return;
+        addFileToOutputBuffer(file);
+        log.info(rows.size() + " row(s) of the Routing Table added to the Output Buffer as RowDelta");
+    }
+
+    /**
+     * @param layerID  Layer of the differential routing table.
+     * @param nodes    Nodes added to the routing table of the layer within the window of the diff emitter.
+     * @param sequence Sequence number of the differential routing table.
+     *                 <br>A node which is no longer present in the routing table has been superseded within the window and is not sent.
+     *                 <br>No file is written if no node is left.
+     */
+    private void emitDifferentialTable(int layerID, List<B4_Node> nodes, long sequence) {
+        B4_Node[][] routingTable = routingTables.get(layerID).getRoutingTable();
+        ArrayList<B4_Node> residentNodes = new ArrayList<>();
+        for (B4_Node node : nodes) {
+            byte[] nodeIdP = node.getB4node().getPackedNodeID();
+            int k = firstMismatch(nodeIdP);
+            if (k != -1 && isResident(nodeIdP, routingTable[k])) residentNodes.add(node);
+        }
+        if (residentNodes.isEmpty()) return;
+        B4_Layer b4_layer = new B4_Layer();
+        String layerName = b4_layer.getLayerName(layerID);
+        File file = createDifferentialTable("DifferentialRoutingTableNodes", "DiffR_" + layerID + "_RoutingTable_" + getNodeID(), residentNodes, sequence);
+        if (file == null) return;
+        addFileToOutputBuffer(file);
+        log.info(layerName + " Differential Routing Table File added to the Output Buffer");
+    }
+
+    private File createDifferentialTable(String rtTag, String fileName, List<B4_Node> differentialRTNodes, long sequence) {
+        if (binaryTables) return writeBinaryTable(rtTag, fileName, null, null, null, differentialRTNodes, sequence);
         File file = null;
         String selfNodeId = localNode.getB4node().getNodeID();
         String selfNodePub = utility.pubToStr(localNode.getB4node().getPublicKey());
@@ -1635,6 +2571,7 @@ public class RoutingManager {
             root.setAttribute("SELF_IP_ADDRESS", selfIPAddress);
             root.setAttribute("SELF_PORT_ADDRESS", selfPortAddress);
             root.setAttribute("SELF_TRANSPORT", selfTransport);
+            root.setAttribute("SEQUENCE", String.valueOf(sequence));
 
             for (int i = 0; i < differentialRTNodes.size(); i++) {
                 Element row1 = doc.createElement("DIFFNODES");
@@ -1669,7 +2606,6 @@ public class RoutingManager {
                 nodeRTT.appendChild(doc.createTextNode(String.valueOf(differentialRTNodes.get(i).getRtt())));
                 row1.appendChild(nodeRTT);
             }
-            differentialRTNodes.clear();
             TransformerFactory transformerFactory = TransformerFactory.newInstance();
             Transformer transformer = transformerFactory.newTransformer();
             DOMSource domSource = new DOMSource(doc);
@@ -1683,65 +2619,81 @@ public class RoutingManager {
         return file;
     }
 
-    private void convertDiffRTFile(String mergerRTFile) {
-        receivedDifferentialNodes = new ArrayList<>();
-        DocumentBuilderFactory builderFactory = DocumentBuilderFactory.newInstance();
-        DocumentBuilder documentBuilder = null;
+    private B4_DifferentialTable convertDiffRTFile(String mergerRTFile) {
+        ArrayList<B4_Node> differentialNodes = new ArrayList<>();
+        B4_Node[] selfNode = new B4_Node[1];
+        long[] sequence = {-1};
         try {
-            documentBuilder = builderFactory.newDocumentBuilder();
-            Document doc = documentBuilder.parse(new File(mergerRTFile));
-            doc.getDocumentElement().normalize();
-            String selfNodeID = doc.getDocumentElement().getAttribute("SELF_NODE_ID");
-            String selfNodePub = doc.getDocumentElement().getAttribute("SELF_PUBLIC_KEY");
-            String selfHashID = doc.getDocumentElement().getAttribute("SELF_HASHID");
-            String selfIPAddress = doc.getDocumentElement().getAttribute("SELF_IP_ADDRESS");
-            String selfPortAddress = doc.getDocumentElement().getAttribute("SELF_PORT_ADDRESS");
-            String selfTransport = doc.getDocumentElement().getAttribute("SELF_TRANSPORT");
-            diffSelfMergerNode = new B4_Node(new B4_NodeTuple(selfNodeID, utility.strToPub(selfNodePub), selfHashID), selfIPAddress, selfPortAddress, selfTransport);
-
-            NodeList nodeList1 = doc.getElementsByTagName("DIFFNODES");
-            for (int i = 0; i < nodeList1.getLength(); i++) {
-                Node node = nodeList1.item(i);
-                if (node.getNodeType() == node.ELEMENT_NODE) {
-                    Element element = (Element) node;
+            new B4_TableReader().read(mergerRTFile, new B4_TableReader.Handler() {
+                @Override
+                public void selfNode(B4_Node node) {
+                    selfNode[0] = node;
+                }
 
-                    //Get the value of ID attribute
-                    String index = node.getAttributes().getNamedItem("INDEX").getNodeValue();
-                    //Get value of all sub-Elements
-                    String nodeID = element.getElementsByTagName("NODEID").item(0).getTextContent();
-                    String nodePub = element.getElementsByTagName("PUBLICKEY").item(0).getTextContent();
-                    String hashID = element.getElementsByTagName("HASHID").item(0).getTextContent();
-                    String nodeIP = element.getElementsByTagName("NODEIP").item(0).getTextContent();
-                    String nodePort = element.getElementsByTagName("NODEPORT").item(0).getTextContent();
-                    String nodeTransport = element.getElementsByTagName("NODETRANSPORT").item(0).getTextContent();
-                    String nodeRTT = element.getElementsByTagName("NODERTT").item(0).getTextContent();
-                   // System.out.println(i + "\n" + nodeID + "\n" + nodePub + "\n" + hashID + "\n" + nodeIP + "\n" + nodePort + "\n" + nodeTransport + "\n" + nodeRTT + "\n\n");
-                    receivedDifferentialNodes.add(new B4_Node(new B4_NodeTuple(nodeID, utility.strToPub(nodePub), hashID), nodeIP, nodePort, nodeTransport, Float.parseFloat(nodeRTT)));
+                @Override
+                public void sequence(long tableSequence) {
+                    sequence[0] = tableSequence;
                 }
-            }
-        } catch (ParserConfigurationException | SAXException | IOException e) {
-            e.printStackTrace();
+
+                @Override
+                public void differentialNode(int index, B4_Node node) {
+                    differentialNodes.add(node);
+                }
+            });
+        } catch (IOException | XMLStreamException | RuntimeException e) {
+            log.error("Exception Occurred", e);
+            return null;
         }
+        if (selfNode[0] == null) return null;
+        return new B4_DifferentialTable(selfNode[0], differentialNodes, sequence[0]);
+    }
+
+    /**
+     * @param differentialTable Received differential routing table.
+     * @param layerID           Layer of the received differential routing table.
+     * @return True if a differential routing table with the same or a higher sequence number has already been received
+     * from the same node for the layer. A table without sequence number is never taken as stale.
+     */
+    private boolean isStaleDiff(B4_DifferentialTable differentialTable, int layerID) {
+        long sequence = differentialTable.getSequence();
+        if (sequence < 0) return false;
+        String sender = layerID + "_" + differentialTable.getSelfNode().getB4node().getNodeID().toUpperCase();
+        Long lastSequence = receivedDiffSequences.get(sender);
+        if (lastSequence != null && sequence <= lastSequence) return true;
+        receivedDiffSequences.put(sender, sequence);
+        return false;
     }
 
-    private void mergeDifferentialRoutingTable(File fileName, int layerID) {
-        B4_Node[][] routingTableLayer = routingTables.get(layerID).getRoutingTable();
-        B4_Node selfNodeOfMergerTable = diffSelfMergerNode;
-        mergerRT(selfNodeOfMergerTable, routingTableLayer);
+    private void mergeDifferentialRoutingTable(B4_DifferentialTable differentialTable, int layerID) {
+        B4_RoutingTable layer = routingTables.get(layerID);
+        B4_Node selfNodeOfMergerTable = differentialTable.getSelfNode();
+        List<B4_Node> receivedDifferentialNodes = differentialTable.getNodes();
+        ArrayList<B4_Node> differentialNodes = new ArrayList<>();
+        layer.lockWriter();
+        try {
+            B4_Node[][] routingTableLayer = layer.copyRoutingTable();
+            ArrayList<B4_Node> mergerNodes = new ArrayList<>();
+            mergerNodes.add(selfNodeOfMergerTable);
+            mergerNodes.addAll(receivedDifferentialNodes);
+            boolean isChanged = mergeNodes(mergerNodes, routingTableLayer, differentialNodes);
+            if (isChanged) layer.publish(routingTableLayer, layer.getNeighbourTable(), localNode.getB4node().getPackedNodeID());
+        } finally {
+            layer.unlockWriter();
+        }
+        diffEmitter.add(layerID, differentialNodes);
+        layer.getPeerIndex().add(selfNodeOfMergerTable);
         for (B4_Node receivedDifferentialNode : receivedDifferentialNodes) {
-            mergerRT(receivedDifferentialNode, routingTableLayer);
+            layer.getPeerIndex().add(receivedDifferentialNode);
         }
         B4_Layer b4_layer = new B4_Layer();
         String layerName = b4_layer.getLayerName(layerID);
-        routingTableToXML(layerName, layerID + "_" + layerName + "_" + localNode.getB4node().getNodeID(), routingTables.get(layerID).getRoutingTable(), routingTables.get(layerID).getNeighbourTable());
+        saveLayer(layerID);
         log.info(layerName + " Merging completed Successfully");
-        String selfNodeID = getNodeID();
-        File file = createDifferentialTable("DifferentialRoutingTableNodes", "DiffR_" + layerID + "_RoutingTable_" + selfNodeID);
-        addFileToOutputBuffer(file);
-        log.info(layerName + " Differential Routing Table File added to the Output Buffer");
     }
 
-    private void diffGetRTTFile(int layerID){
+    private void diffGetRTTFile(B4_DifferentialTable differentialTable, int layerID) {
+        B4_Node diffSelfMergerNode = differentialTable.getSelfNode();
+        List<B4_Node> receivedDifferentialNodes = differentialTable.getNodes();
         try {
             DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
             DocumentBuilder builder = factory.newDocumentBuilder();
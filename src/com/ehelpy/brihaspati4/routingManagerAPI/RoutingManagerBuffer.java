@@ -3,8 +3,11 @@ package com.ehelpy.brihaspati4.routingManagerAPI;
 import org.apache.log4j.Logger;
 
 import java.io.File;
+import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.function.Predicate;
 import java.util.concurrent.locks.ReentrantLock;
 
 /**
@@ -75,6 +78,29 @@ class RoutingManagerBuffer {
         return file;
     }
 
+    /**
+     * This method is used to fetch all the files of the inputBuffer which are accepted by the filter.
+     * @param filter - decides which files are to be fetched.
+     * @return - fetched files in the order in which they were added. Other files stay in the inputBuffer.
+     */
+    List<File> fetchAllFromInputBuffer(Predicate<File> filter) {
+        List<File> files = new ArrayList<>();
+        inputBufferLock.lock();
+        try {
+            Iterator<File> iterator = inputRoutingBuffer.iterator();
+            while (iterator.hasNext()) {
+                File file = iterator.next();
+                if (filter.test(file)) {
+                    files.add(file);
+                    iterator.remove();
+                }
+            }
+        } finally {
+            inputBufferLock.unlock();
+        }
+        return files;
+    }
+
     /**
      * @param file - File object is given as input argument.
      * @return - true if the file is added successfully.
@@ -0,0 +1,99 @@
+package com.ehelpy.brihaspati4.routingManagerAPI;
+
+/**
+ * This class describes one change made to a cell of the routing table or to an entry of the neighbour table of a layer.
+ * Events are delivered to a RoutingTableListener.
+ */
+public final class RoutingTableEvent {
+    /**
+     * Kind of change.
+     */
+    public enum Type {
+        /** An empty cell of the routing table got a node. */
+        CELL_INSERTED,
+        /** The node of a cell of the routing table was replaced by another node. */
+        CELL_REPLACED,
+        /** The node of a cell of the routing table was removed and the cell is empty. */
+        CELL_PURGED,
+        /** A node was added to the neighbour table. */
+        NEIGHBOUR_ADDED,
+        /** A node was removed from the neighbour table. */
+        NEIGHBOUR_REMOVED,
+        /** A node of the neighbour table moved to another position or its RTT changed. */
+        NEIGHBOUR_RERANKED
+    }
+
+    private final Type type;
+    private final int layerID;
+    private final int row;
+    private final int column;
+    private final B4_Node oldNode;
+    private final B4_Node newNode;
+
+    /**
+     * @param type    - kind of change.
+     * @param layerID - layer of the table.
+     * @param row     - row of the routing table cell, or position in the neighbour table.
+     * @param column  - column of the routing table cell, -1 for the neighbour table.
+     * @param oldNode - node before the change, null if there was none.
+     * @param newNode - node after the change, null if there is none.
+     */
+    RoutingTableEvent(Type type, int layerID, int row, int column, B4_Node oldNode, B4_Node newNode) {
+        this.type = type;
+        this.layerID = layerID;
+        this.row = row;
+        this.column = column;
+        this.oldNode = oldNode;
+        this.newNode = newNode;
+    }
+
+    /**
+     * @return - kind of change.
+     */
+    public Type getType() {
+        return type;
+    }
+
+    /**
+     * @return - layer of the table.
+     */
+    public int getLayerID() {
+        return layerID;
+    }
+
+    /**
+     * @return - row of the routing table cell. For a neighbour table event, the position of the node in the new table
+     * (the old table for NEIGHBOUR_REMOVED).
+     */
+    public int getRow() {
+        return row;
+    }
+
+    /**
+     * @return - column of the routing table cell (0 predecessor, 1 successor, 2 middle), -1 for a neighbour table event.
+     */
+    public int getColumn() {
+        return column;
+    }
+
+    /**
+     * @return - node before the change, null for CELL_INSERTED and NEIGHBOUR_ADDED.
+     */
+    public B4_Node getOldNode() {
+        return oldNode;
+    }
+
+    /**
+     * @return - node after the change, null for CELL_PURGED and NEIGHBOUR_REMOVED.
+     */
+    public B4_Node getNewNode() {
+        return newNode;
+    }
+
+    @Override
+    public String toString() {
+        String oldID = oldNode == null ? "" : oldNode.getB4node().getNodeID();
+        String newID = newNode == null ? "" : newNode.getB4node().getNodeID();
+        return type + " layer " + layerID + " [" + row + "]" + (column < 0 ? "" : "[" + column + "]") + " " + oldID + " -> " + newID;
+    }
+}
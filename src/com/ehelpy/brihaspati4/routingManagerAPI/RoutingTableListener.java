@@ -0,0 +1,19 @@
+package com.ehelpy.brihaspati4.routingManagerAPI;
+
+import java.util.List;
+
+/**
+ * This interface is implemented by the glue code to be informed of the changes made to the routing and neighbour table
+ * of a layer, in place of reading and comparing the tables again.
+ * It is registered with RoutingManager.addRoutingTableListener.
+ */
+public interface RoutingTableListener {
+    /**
+     * @param layerID - layer whose tables are changed.
+     * @param events  - all the changes made by one operation (merge, differential merge, neighbour merge or purge) in the
+     *                order of the cells of the tables. The list cannot be modified.
+     *                <br>It is called on the notification thread of the RoutingManager, one batch after the other in the order in
+     *                which the operations were completed, and never on the thread which made the change.
+     */
+    void onRoutingTableChanged(int layerID, List<RoutingTableEvent> events);
+}